@@ -0,0 +1,73 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti;
+
+import io.nats.client.impl.NatsMessage;
+import io.nats.jsmulti.settings.Arguments;
+import io.nats.jsmulti.settings.Context;
+import io.nats.jsmulti.shared.Payloads;
+import io.nats.jsmulti.shared.SubjectSpace;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the publishing thread does per message before the client is called:
+ * picking the payload and subject and building the latency message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PublishBenchmark {
+
+    @Param({"128", "4096"})
+    public int payloadSize;
+
+    private Context ctx;
+    private Payloads.Cursor payloads;
+    private SubjectSpace.Chooser subjects;
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        ctx = new Context(Arguments.pubCore("bench").subjectTemplate("bench.{key}", 10_000, SubjectSpace.Distribution.ZIPFIAN)
+            .payloadSize(payloadSize).payloadVariants(16).messageCount(1_000_000).noReporting());
+        payloads = ctx.getPayloadCursor();
+        subjects = ctx.getSubjectChooser();
+        payload = ctx.getPayload();
+    }
+
+    @Benchmark
+    public byte[] getPayload() {
+        return ctx.getPayload();
+    }
+
+    @Benchmark
+    public byte[] payloadCursor() {
+        return payloads.next();
+    }
+
+    @Benchmark
+    public String nextSubject() {
+        return subjects.next();
+    }
+
+    @Benchmark
+    public NatsMessage buildLatencyMessage() {
+        return JsMulti.buildLatencyMessage("bench", payload, System.currentTimeMillis());
+    }
+}
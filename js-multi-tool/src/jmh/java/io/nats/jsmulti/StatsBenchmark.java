@@ -0,0 +1,117 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti;
+
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import io.nats.jsmulti.settings.Arguments;
+import io.nats.jsmulti.settings.Context;
+import io.nats.jsmulti.shared.SharedStats;
+import io.nats.jsmulti.shared.Stats;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.nats.jsmulti.shared.Utils.HDR_PUB_TIME;
+
+/**
+ * What counting a message costs the consumer thread, with and without subject classes,
+ * and reading the publish time from the latency header.
+ * The fetch batch ones compare counting a fetched list one message at a time with counting it as a batch
+ * on stats shared by threads, which take their lock per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StatsBenchmark {
+
+    static final int FETCH_BATCH = 500;
+
+    private Stats stats;
+    private Stats classStats;
+    private Message message;
+    private Message keyedMessage;
+    private Headers latencyHeaders;
+    private Stats sharedStats;
+    private List<Message> fetched;
+
+    @Setup
+    public void setup() throws Exception {
+        stats = new Stats(new Context(Arguments.subCore("bench").messageCount(1_000_000).noReporting()));
+        classStats = new Stats(new Context(Arguments.subCore("bench").subjectTemplate("bench.{key}")
+            .messageCount(1_000_000).noReporting()));
+        byte[] payload = new byte[128];
+        message = new NatsMessage("bench", null, payload);
+        keyedMessage = new NatsMessage("bench.42", null, payload);
+        latencyHeaders = new Headers().put(HDR_PUB_TIME, "" + System.currentTimeMillis());
+        sharedStats = new SharedStats(new Context(Arguments.subPull("bench").messageCount(1_000_000).noReporting()), 1);
+        fetched = new ArrayList<>();
+        for (int x = 0; x < FETCH_BATCH; x++) {
+            fetched.add(message);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FETCH_BATCH)
+    public Stats sharedCountFetchEach() {
+        long received = System.currentTimeMillis();
+        for (Message m : fetched) {
+            sharedStats.count(m, received);
+        }
+        return sharedStats;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FETCH_BATCH)
+    public Stats sharedCountFetchBatch() {
+        sharedStats.countBatch(fetched, System.currentTimeMillis());
+        return sharedStats;
+    }
+
+    @Benchmark
+    public Stats count() {
+        stats.count(message, System.currentTimeMillis());
+        return stats;
+    }
+
+    @Benchmark
+    public Stats countWithSubjectClass() {
+        classStats.count(keyedMessage, System.currentTimeMillis());
+        return classStats;
+    }
+
+    @Benchmark
+    public Stats stopAndCount() {
+        stats.start();
+        stats.stopAndCount(128);
+        return stats;
+    }
+
+    @Benchmark
+    public Stats recordOp() {
+        stats.recordOp(Stats.Op.PUBLISH, 250_000);
+        return stats;
+    }
+
+    @Benchmark
+    public long readPubTime() {
+        return Stats.readPubTime(latencyHeaders);
+    }
+}
@@ -0,0 +1,59 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti;
+
+import io.nats.jsmulti.settings.Arguments;
+import io.nats.jsmulti.settings.Context;
+import io.nats.jsmulti.shared.Stats;
+import io.nats.jsmulti.shared.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The report check made for every message, on the path where it does not report,
+ * and parsing the formatted numbers used in arguments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UtilsBenchmark {
+
+    @Param({"10_000", "1,000,000", "64ki"})
+    public String number;
+
+    private Context ctx;
+    private Stats stats;
+    private long unReported;
+
+    @Setup
+    public void setup() throws Exception {
+        ctx = new Context(Arguments.pubCore("bench").messageCount(1_000_000).noReporting());
+        stats = new Stats(ctx);
+    }
+
+    @Benchmark
+    public long reportAndTrackMaybe() {
+        unReported = Utils.reportAndTrackMaybe(ctx, 1000, unReported + 1, "bench", stats);
+        return unReported;
+    }
+
+    @Benchmark
+    public long parseLong() {
+        return Utils.parseLong(number);
+    }
+}
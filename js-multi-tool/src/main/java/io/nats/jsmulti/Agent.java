@@ -0,0 +1,193 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti;
+
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.Subscription;
+import io.nats.client.support.JsonParser;
+import io.nats.client.support.JsonValue;
+import io.nats.client.support.JsonValueUtils;
+import io.nats.jsmulti.settings.Action;
+import io.nats.jsmulti.settings.Arguments;
+import io.nats.jsmulti.settings.Context;
+import io.nats.jsmulti.shared.Stats;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.nats.jsmulti.Coordinator.*;
+
+/**
+ * A process that runs JsMulti for a {@link Coordinator}. The agent registers on the control subjects
+ * until a coordinator answers with the run arguments, connects, tells the coordinator it is ready,
+ * waits for the start, runs, then sends its stats. Then it registers for the next run unless -once.
+ * The agent's own JsMulti arguments, i.e. -s or -cf, are used for the control connection
+ * and are added after the coordinator's arguments, so they win for the run too.
+ * Usage: Agent [-control prefix] [-id agent-id] [-once] [jsmulti-connection-args]
+ * Gradle: gradle agent --args="-s nats://host:4222"
+ */
+public class Agent {
+
+    public static final long REGISTER_RETRY_MILLIS = 1000;
+    public static final int SEND_ATTEMPTS = 3;
+
+    private final String id;
+    private final String prefix;
+    private final String[] overrides;
+    private final Context controlCtx;
+
+    public static void main(String[] args) throws Exception {
+        String id = ManagementFactory.getRuntimeMXBean().getName();
+        String prefix = DEFAULT_CONTROL_PREFIX;
+        boolean once = false;
+        List<String> overrides = new ArrayList<>();
+        for (int x = 0; x < args.length; x++) {
+            switch (args[x]) {
+                case "-control":
+                    prefix = args[++x];
+                    break;
+                case "-id":
+                    id = args[++x];
+                    break;
+                case "-once":
+                    once = true;
+                    break;
+                default:
+                    overrides.add(args[x]);
+            }
+        }
+        Agent agent = new Agent(id, prefix, overrides.toArray(new String[0]));
+        do {
+            agent.run();
+        } while (!once);
+    }
+
+    /**
+     * Construct an agent
+     * @param id the agent id, unique among the agents of a run
+     * @param prefix the control subject prefix, the coordinator must use the same
+     * @param overrides JsMulti arguments used for the control connection and added to the coordinator's
+     */
+    public Agent(String id, String prefix, String[] overrides) {
+        this.id = id;
+        this.prefix = prefix;
+        this.overrides = overrides;
+        // the action only makes it a valid context, the control context is just for connecting
+        controlCtx = new Context(Arguments.instance(Action.PUB).add(overrides));
+    }
+
+    /**
+     * Wait for a coordinator and do one run
+     * @return the stats or null if the run did not happen
+     * @throws Exception any exception on the control connection
+     */
+    public List<Stats> run() throws Exception {
+        try (Connection nc = controlCtx.connect()) {
+            JsonValue runInfo = register(nc);
+            String runId = JsonValueUtils.readString(runInfo, "run", null);
+            Duration timeout = Duration.ofMillis(JsonValueUtils.readLong(runInfo, "timeoutMillis", DEFAULT_TIMEOUT_SECONDS * 1000));
+            Context ctx = new Context(Arguments.instance()
+                .add(JsonValueUtils.readStringList(runInfo, "args").toArray(new String[0]))
+                .add(overrides));
+
+            Subscription start = nc.subscribe(subject(prefix, runId, START));
+            List<Connection> connections = new ArrayList<>();
+            try {
+                try {
+                    for (int x = 0; x < JsMulti.connectionsNeeded(ctx); x++) {
+                        connections.add(ctx.connect());
+                    }
+                }
+                catch (Exception e) {
+                    send(nc, subject(prefix, runId, READY), message().put("error", e.toString()), timeout);
+                    return null;
+                }
+                send(nc, subject(prefix, runId, READY), message(), timeout);
+
+                if (start.nextMessage(timeout) == null) {
+                    ctx.app.reportErr("The coordinator did not start the run.");
+                    return null;
+                }
+
+                List<Stats> statsList;
+                try {
+                    statsList = JsMulti.run(ctx, JsMulti.connectionsFor(ctx, connections), false, true);
+                }
+                catch (Exception e) {
+                    ctx.app.reportEx(e);
+                    send(nc, subject(prefix, runId, STATS), message().put("error", e.toString()), timeout);
+                    return null;
+                }
+
+                // one message per stats, so a big run does not go over the max payload,
+                // numbered so the coordinator can drop one that arrives twice when a send is retried
+                for (int x = 0; x < statsList.size(); x++) {
+                    send(nc, subject(prefix, runId, STATS), message()
+                        .put("count", statsList.size())
+                        .put("seq", x)
+                        .put("stats", new JsonValue(statsList.get(x).toJsonValueMap())), timeout);
+                }
+                return statsList;
+            }
+            finally {
+                for (Connection c : connections) {
+                    c.close();
+                }
+            }
+        }
+    }
+
+    // registers until a coordinator answers with the run info
+    private JsonValue register(Connection nc) throws Exception {
+        controlCtx.app.report("Agent " + id + " registering on " + subject(prefix, REGISTER));
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        while (true) {
+            try {
+                Message m = nc.request(subject(prefix, REGISTER), idBytes, Duration.ofMillis(REGISTER_RETRY_MILLIS));
+                if (m != null && m.getData() != null && m.getData().length > 0) {
+                    return JsonParser.parse(m.getData());
+                }
+            }
+            catch (Exception e) {
+                // no coordinator yet
+            }
+            Thread.sleep(REGISTER_RETRY_MILLIS);
+        }
+    }
+
+    private JsonValueUtils.MapBuilder message() {
+        return JsonValueUtils.mapBuilder().put("agent", id);
+    }
+
+    private void send(Connection nc, String subject, JsonValueUtils.MapBuilder mb, Duration timeout) throws Exception {
+        byte[] data = mb.toJsonValue().toJson().getBytes(StandardCharsets.UTF_8);
+        for (int x = 1; x <= SEND_ATTEMPTS; x++) {
+            try {
+                if (nc.request(subject, data, timeout) != null) {
+                    return;
+                }
+            }
+            catch (Exception e) {
+                if (x == SEND_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+        controlCtx.app.reportErr("The coordinator did not answer on " + subject);
+    }
+}
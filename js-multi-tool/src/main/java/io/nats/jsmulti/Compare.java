@@ -0,0 +1,344 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti;
+
+import io.nats.jsmulti.shared.Histogram;
+import io.nats.jsmulti.shared.ResultsFile;
+import io.nats.jsmulti.shared.Stats;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares saved results, see -rsf, so a client or server upgrade can be gated on performance.
+ * The first results are the baseline, each of the others is compared to it.
+ * Results are one or more files separated by commas, every run in them is a repetition.
+ * For each metric, the throughput and the percentiles of each timed operation and of the latency,
+ * the mean of the repetitions is compared. When both sides have at least 2 repetitions
+ * Welch's t-test says whether the difference is significant. A metric is a regression when it is worse
+ * than the threshold and the difference is significant, or cannot be tested because there is only one repetition.
+ * Exits with 1 when there is a regression, so it can be scripted.
+ * Usage: Compare [-threshold percent] [-alpha significance] baseline-results candidate-results...
+ * Gradle: gradle compare --args="-threshold 5 before.jsonl after.jsonl"
+ */
+public class Compare {
+
+    public static final double DEFAULT_THRESHOLD_PERCENT = 5;
+    public static final double DEFAULT_ALPHA = 0.05;
+    public static final double[] COMPARE_PERCENTILES = new double[] {50, 90, 99, 99.9};
+
+    public static final int EXIT_REGRESSION = 1;
+
+    public static final String REPORT_SEP_LINE    = "| ------------------------- | -------------- | -------------- | --------- | ------- | -------------------- |";
+    public static final String REPORT_LINE_HEADER = "| %-25s |       baseline |      candidate |     delta |       p | %-20s |\n";
+    public static final String REPORT_LINE_FORMAT = "| %-25s | %14s | %14s | %8s%% | %7s | %-20s |\n";
+
+    /**
+     * The comparison of one metric
+     */
+    public static class Result {
+        public final String metric;
+        public final boolean higherIsBetter;
+        public final double baseline;
+        public final double candidate;
+        public final double deltaPercent;
+        public final double pValue;
+        public final boolean beyondThreshold;
+        public final boolean significant;
+        public final boolean regression;
+        public final boolean improvement;
+
+        Result(String metric, boolean higherIsBetter, double[] baseline, double[] candidate, double thresholdPercent, double alpha) {
+            this.metric = metric;
+            this.higherIsBetter = higherIsBetter;
+            this.baseline = mean(baseline);
+            this.candidate = mean(candidate);
+            deltaPercent = this.baseline == 0 ? (this.candidate == 0 ? 0 : 100) : 100 * (this.candidate - this.baseline) / this.baseline;
+            pValue = welchPValue(baseline, candidate);
+            // one repetition cannot be tested, so it counts as significant
+            significant = Double.isNaN(pValue) || pValue < alpha;
+            double better = higherIsBetter ? deltaPercent : -deltaPercent;
+            beyondThreshold = Math.abs(better) > thresholdPercent;
+            regression = beyondThreshold && better < 0 && significant;
+            improvement = beyondThreshold && better > 0 && significant;
+        }
+
+        public String getVerdict() {
+            if (regression) {
+                return "REGRESSION";
+            }
+            if (improvement) {
+                return "improvement";
+            }
+            return beyondThreshold ? "not significant" : "";
+        }
+    }
+
+    private final double thresholdPercent;
+    private final double alpha;
+
+    public static void main(String[] args) throws Exception {
+        double threshold = DEFAULT_THRESHOLD_PERCENT;
+        double alpha = DEFAULT_ALPHA;
+        List<String> specs = new ArrayList<>();
+        try {
+            for (int x = 0; x < args.length; x++) {
+                switch (args[x]) {
+                    case "-threshold":
+                        threshold = Double.parseDouble(args[++x]);
+                        break;
+                    case "-alpha":
+                        alpha = Double.parseDouble(args[++x]);
+                        break;
+                    default:
+                        specs.add(args[x]);
+                }
+            }
+        }
+        catch (Exception e) {
+            specs.clear();
+        }
+        if (specs.size() < 2 || threshold < 0 || alpha <= 0 || alpha >= 1) {
+            System.err.println("Usage: Compare [-threshold percent] [-alpha significance] baseline-results candidate-results...");
+            System.err.println("    results are one or more results files (-rsf) separated by commas, every run in them is a repetition");
+            System.exit(-1);
+        }
+
+        Compare compare = new Compare(threshold, alpha);
+        List<List<Stats>> baseline = load(specs.get(0));
+        boolean regressed = false;
+        for (int x = 1; x < specs.size(); x++) {
+            List<List<Stats>> candidate = load(specs.get(x));
+            System.out.println("\nBaseline " + specs.get(0) + " (" + baseline.size() + " runs) vs candidate "
+                + specs.get(x) + " (" + candidate.size() + " runs), threshold " + threshold + "%, alpha " + alpha);
+            List<Result> results = compare.compare(baseline, candidate);
+            report(results, System.out);
+            for (Result r : results) {
+                regressed |= r.regression;
+            }
+        }
+        System.exit(regressed ? EXIT_REGRESSION : 0);
+    }
+
+    public Compare(double thresholdPercent, double alpha) {
+        this.thresholdPercent = thresholdPercent;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Load the runs of one or more results files
+     * @param spec the files, separated by commas
+     * @return every run in the files
+     * @throws Exception if a file cannot be read
+     */
+    public static List<List<Stats>> load(String spec) throws Exception {
+        List<List<Stats>> runs = new ArrayList<>();
+        for (String fileSpec : spec.split(",")) {
+            if (!fileSpec.trim().isEmpty()) {
+                runs.addAll(ResultsFile.read(fileSpec.trim()));
+            }
+        }
+        if (runs.isEmpty()) {
+            throw new IllegalArgumentException("No runs in " + spec);
+        }
+        return runs;
+    }
+
+    /**
+     * Compare the candidate runs to the baseline runs, metric by metric.
+     * Only the metrics every run of both sides has are compared.
+     * @param baseline the baseline runs, each the stats of every thread of the run
+     * @param candidate the candidate runs
+     * @return the result for each metric
+     */
+    public List<Result> compare(List<List<Stats>> baseline, List<List<Stats>> candidate) {
+        List<Map<String, Double>> baseMetrics = metrics(baseline);
+        List<Map<String, Double>> candMetrics = metrics(candidate);
+        List<Result> results = new ArrayList<>();
+        for (String metric : baseMetrics.get(0).keySet()) {
+            double[] b = values(baseMetrics, metric);
+            double[] c = values(candMetrics, metric);
+            if (b != null && c != null) {
+                results.add(new Result(metric, !metric.endsWith(" ms"), b, c, thresholdPercent, alpha));
+            }
+        }
+        return results;
+    }
+
+    public static void report(List<Result> results, PrintStream out) {
+        out.println(REPORT_SEP_LINE);
+        out.printf(REPORT_LINE_HEADER, "Metric", "");
+        out.println(REPORT_SEP_LINE);
+        for (Result r : results) {
+            out.printf(REPORT_LINE_FORMAT, r.metric,
+                Stats.format3(r.baseline),
+                Stats.format3(r.candidate),
+                String.format(Locale.ROOT, "%+.2f", r.deltaPercent),
+                Double.isNaN(r.pValue) ? "n/a" : String.format(Locale.ROOT, "%.4f", r.pValue),
+                r.getVerdict());
+        }
+        out.println(REPORT_SEP_LINE);
+    }
+
+    // the metrics of each run
+    private static List<Map<String, Double>> metrics(List<List<Stats>> runs) {
+        List<Map<String, Double>> list = new ArrayList<>();
+        for (List<Stats> run : runs) {
+            list.add(runMetrics(run));
+        }
+        return list;
+    }
+
+    /**
+     * The metrics of one run, from the total of its threads, the throughput then
+     * the percentiles of each timed operation and of the latency that the run has
+     * @param run the stats of every thread of the run
+     * @return the metric values by name, in order
+     */
+    static Map<String, Double> runMetrics(List<Stats> run) {
+        Stats total = Stats.total(run);
+        Map<String, Double> m = new LinkedHashMap<>();
+        if (total.getElapsed() > 0) {
+            m.put("msgs/sec", total.getMessageCount() * Stats.NANOS_PER_SECOND / total.getElapsed());
+            m.put("bytes/sec", total.getBytes() * Stats.NANOS_PER_SECOND / total.getElapsed());
+        }
+        for (Stats.Op op : Stats.Op.values()) {
+            percentiles(m, op.getLabel(), total.getOpHistogram(op));
+        }
+        percentiles(m, "Latency", total.getFullHistogram());
+        return m;
+    }
+
+    private static void percentiles(Map<String, Double> m, String label, Histogram h) {
+        if (h.getCount() > 0) {
+            for (double p : COMPARE_PERCENTILES) {
+                m.put(label + " p" + (p == (long)p ? "" + (long)p : "" + p) + " ms", h.getValueAtPercentile(p) / Stats.NANOS_PER_MILLI);
+            }
+        }
+    }
+
+    private static double[] values(List<Map<String, Double>> metrics, String metric) {
+        double[] values = new double[metrics.size()];
+        for (int x = 0; x < values.length; x++) {
+            Double d = metrics.get(x).get(metric);
+            if (d == null) {
+                return null;
+            }
+            values[x] = d;
+        }
+        return values;
+    }
+
+    // ----------------------------------------------------------------------------------------------------
+    // Statistics
+    // ----------------------------------------------------------------------------------------------------
+    static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    static double variance(double[] values) {
+        double mean = mean(values);
+        double sum = 0;
+        for (double v : values) {
+            sum += (v - mean) * (v - mean);
+        }
+        return sum / (values.length - 1);
+    }
+
+    /**
+     * The two sided p-value of Welch's t-test, whether the means differ without assuming equal variances
+     * @param a the first sample
+     * @param b the second sample
+     * @return the p-value or NaN if either sample has fewer than 2 values
+     */
+    static double welchPValue(double[] a, double[] b) {
+        if (a.length < 2 || b.length < 2) {
+            return Double.NaN;
+        }
+        double va = variance(a) / a.length;
+        double vb = variance(b) / b.length;
+        double diff = mean(b) - mean(a);
+        if (va + vb == 0) {
+            return diff == 0 ? 1 : 0;
+        }
+        double t = diff / Math.sqrt(va + vb);
+        double df = (va + vb) * (va + vb) / (va * va / (a.length - 1) + vb * vb / (b.length - 1));
+        return regularizedIncompleteBeta(df / (df + t * t), df / 2, 0.5);
+    }
+
+    // I_x(a, b) by its continued fraction, Numerical Recipes 6.4
+    static double regularizedIncompleteBeta(double x, double a, double b) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaContinuedFraction(x, a, b) / a;
+        }
+        return 1 - front * betaContinuedFraction(1 - x, b, a) / b;
+    }
+
+    private static double betaContinuedFraction(double x, double a, double b) {
+        final double tiny = 1e-300;
+        double c = 1;
+        double d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double h = d;
+        for (int m = 1; m <= 300; m++) {
+            int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+            d = 1 + aa * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + aa / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            h *= d * c;
+            aa = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+            d = 1 + aa * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + aa / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-12) {
+                break;
+            }
+        }
+        return h;
+    }
+
+    // Lanczos approximation
+    private static double logGamma(double x) {
+        double[] g = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+            -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double ser = 1.000000000190015;
+        for (double c : g) {
+            ser += c / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * ser / x);
+    }
+}
@@ -0,0 +1,257 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti;
+
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.NUID;
+import io.nats.client.Subscription;
+import io.nats.client.support.JsonParser;
+import io.nats.client.support.JsonValue;
+import io.nats.client.support.JsonValueUtils;
+import io.nats.jsmulti.settings.Context;
+import io.nats.jsmulti.shared.Stats;
+import io.nats.jsmulti.shared.TerminalException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs JsMulti on several {@link Agent} processes as one run, for more load than one JVM can make.
+ * Agents register on the control subjects and are sent the run arguments, connect,
+ * then wait on a barrier so they all start together. When they are done they send their stats,
+ * histograms included, and the coordinator reports them as one run.
+ * Every agent runs the arguments as given, so the total message count is the agent count times -m.
+ * Usage: Coordinator -agents count [-control prefix] [-timeout seconds] [-run_timeout seconds] jsmulti-args
+ * Gradle: gradle coordinator --args="-agents 3 -a PubAsync -u sub -m 1_000_000"
+ */
+public class Coordinator {
+
+    public static final String DEFAULT_CONTROL_PREFIX = "jsmulti.control";
+    public static final long DEFAULT_TIMEOUT_SECONDS = 60;
+
+    // control subjects, the run ones are under the run id
+    static final String REGISTER = "register";
+    static final String READY = "ready";
+    static final String START = "start";
+    static final String STATS = "stats";
+
+    private final Context ctx;
+    private final String[] args;
+    private final int agentCount;
+    private final String prefix;
+    private final Duration timeout;
+    private final Duration runTimeout;
+
+    public static void main(String[] args) throws Exception {
+        int agents = 0;
+        String prefix = DEFAULT_CONTROL_PREFIX;
+        long timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+        long runTimeoutSeconds = 0;
+        List<String> jsMultiArgs = new ArrayList<>();
+        try {
+            for (int x = 0; x < args.length; x++) {
+                switch (args[x]) {
+                    case "-agents":
+                        agents = Integer.parseInt(args[++x]);
+                        break;
+                    case "-control":
+                        prefix = args[++x];
+                        break;
+                    case "-timeout":
+                        timeoutSeconds = Long.parseLong(args[++x]);
+                        break;
+                    case "-run_timeout":
+                        runTimeoutSeconds = Long.parseLong(args[++x]);
+                        break;
+                    default:
+                        jsMultiArgs.add(args[x]);
+                }
+            }
+        }
+        catch (Exception e) {
+            agents = 0;
+        }
+        if (agents < 1) {
+            System.err.println("Usage: Coordinator -agents count [-control prefix] [-timeout seconds] [-run_timeout seconds] jsmulti-args");
+            System.exit(-1);
+        }
+        new Coordinator(agents, prefix, Duration.ofSeconds(timeoutSeconds), Duration.ofSeconds(runTimeoutSeconds),
+            jsMultiArgs.toArray(new String[0])).run(true);
+    }
+
+    /**
+     * Construct a coordinator
+     * @param agentCount the number of agents to run
+     * @param prefix the control subject prefix, the agents must use the same
+     * @param timeout how long to wait for the agents to register and be ready
+     * @param runTimeout how long to wait for the agents' stats once started, zero to wait as long as it takes
+     * @param args the JsMulti arguments for every agent, also used by the coordinator to connect
+     */
+    public Coordinator(int agentCount, String prefix, Duration timeout, Duration runTimeout, String[] args) {
+        this.ctx = new Context(args);
+        this.args = args;
+        this.agentCount = agentCount;
+        this.prefix = prefix;
+        this.timeout = timeout;
+        this.runTimeout = runTimeout;
+    }
+
+    /**
+     * Run once with the agents
+     * @param reportWhenDone whether to print the report of all the agents
+     * @return the stats of each agent by agent id, in the order the agents registered
+     * @throws Exception any exception
+     */
+    public Map<String, List<Stats>> run(boolean reportWhenDone) throws Exception {
+        String runId = NUID.nextGlobal();
+        Map<String, List<Stats>> results = new LinkedHashMap<>();
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        try (Connection nc = ctx.connect()) {
+            Subscription register = nc.subscribe(subject(prefix, REGISTER));
+            Subscription ready = nc.subscribe(subject(prefix, runId, READY));
+            Subscription stats = nc.subscribe(subject(prefix, runId, STATS));
+            nc.flush(timeout);
+
+            ctx.app.report("Waiting for " + agentCount + " agent(s) on " + subject(prefix, REGISTER));
+            byte[] runInfo = runInfo(runId);
+            long deadline = System.currentTimeMillis() + timeout.toMillis();
+            while (expected.size() < agentCount) {
+                Message m = register.nextMessage(remaining(deadline));
+                if (m == null) {
+                    throw new TerminalException("Only " + expected.size() + " of " + agentCount + " agents registered.");
+                }
+                String agentId = new String(m.getData(), StandardCharsets.UTF_8);
+                expected.put(agentId, -1); // a repeat registration is answered again
+                nc.publish(m.getReplyTo(), runInfo);
+                ctx.app.report("Agent registered: " + agentId);
+            }
+            register.unsubscribe();
+
+            // agents retry sends, so ready and stats messages can come more than once, they are answered every time
+            // but only counted once, by agent id, and for stats by the agent id and the stats sequence
+            deadline = System.currentTimeMillis() + timeout.toMillis();
+            Set<String> readyAgents = new HashSet<>();
+            while (readyAgents.size() < agentCount) {
+                Message m = ready.nextMessage(remaining(deadline));
+                if (m == null) {
+                    throw new TerminalException("Only " + readyAgents.size() + " of " + agentCount + " agents were ready.");
+                }
+                JsonValue jv = JsonParser.parse(m.getData());
+                String agentId = JsonValueUtils.readString(jv, "agent", "?");
+                String error = JsonValueUtils.readString(jv, "error", null);
+                if (error != null) {
+                    throw new TerminalException("Agent " + agentId + " failed to get ready: " + error);
+                }
+                nc.publish(m.getReplyTo(), null);
+                readyAgents.add(agentId);
+            }
+
+            ctx.app.report("All agents ready, starting.");
+            nc.publish(subject(prefix, runId, START), null);
+            nc.flush(timeout);
+
+            // each agent sends a message per stats, each with the count it is sending
+            Set<String> received = new HashSet<>();
+            long runDeadline = runTimeout.isZero() ? Long.MAX_VALUE : System.currentTimeMillis() + runTimeout.toMillis();
+            while (!allIn(expected, results)) {
+                Message m = stats.nextMessage(runDeadline == Long.MAX_VALUE ? Duration.ofSeconds(1) : remaining(runDeadline));
+                if (m == null) {
+                    if (System.currentTimeMillis() >= runDeadline) {
+                        ctx.app.reportErr("Timed out waiting for stats, reporting the agents that finished.");
+                        break;
+                    }
+                    continue;
+                }
+                JsonValue jv = JsonParser.parse(m.getData());
+                String agentId = JsonValueUtils.readString(jv, "agent", "?");
+                String error = JsonValueUtils.readString(jv, "error", null);
+                if (error != null) {
+                    ctx.app.reportErr("Agent " + agentId + " failed: " + error);
+                    expected.put(agentId, 0);
+                }
+                else {
+                    expected.put(agentId, JsonValueUtils.readInteger(jv, "count", 0));
+                    if (received.add(agentId + "." + JsonValueUtils.readInteger(jv, "seq", 0))) {
+                        results.computeIfAbsent(agentId, k -> new ArrayList<>())
+                            .add(new Stats(JsonValueUtils.readValue(jv, "stats")));
+                    }
+                }
+                nc.publish(m.getReplyTo(), null);
+            }
+        }
+
+        if (reportWhenDone && !results.isEmpty()) {
+            report(results);
+        }
+        return results;
+    }
+
+    /**
+     * Print which rows belong to which agent, then one report of every agent's stats
+     * @param results the stats by agent
+     */
+    public static void report(Map<String, List<Stats>> results) {
+        List<Stats> all = new ArrayList<>();
+        int agent = 0;
+        for (Map.Entry<String, List<Stats>> entry : results.entrySet()) {
+            int first = all.size();
+            all.addAll(entry.getValue());
+            System.out.println("Agent " + (++agent) + " " + entry.getKey() + ": "
+                + Stats.lineLabel(first) + " to " + Stats.lineLabel(all.size() - 1));
+        }
+        Stats.report(all);
+    }
+
+    private static boolean allIn(Map<String, Integer> expected, Map<String, List<Stats>> results) {
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            List<Stats> in = results.get(entry.getKey());
+            int count = in == null ? 0 : in.size();
+            if (entry.getValue() < 0 || count < entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] runInfo(String runId) {
+        JsonValueUtils.ArrayBuilder ab = JsonValueUtils.arrayBuilder();
+        for (String a : args) {
+            ab.add(a);
+        }
+        return JsonValueUtils.mapBuilder()
+            .put("run", runId)
+            .put("args", ab.toJsonValue())
+            .put("timeoutMillis", timeout.toMillis())
+            .toJsonValue().toJson().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Duration remaining(long deadline) {
+        return Duration.ofMillis(Math.max(1, deadline - System.currentTimeMillis()));
+    }
+
+    static String subject(String prefix, String name) {
+        return prefix + "." + name;
+    }
+
+    static String subject(String prefix, String runId, String name) {
+        return prefix + "." + runId + "." + name;
+    }
+}
@@ -16,7 +16,9 @@ package io.nats.jsmulti;
 import io.nats.client.*;
 import io.nats.client.api.*;
 import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsKeyValueWatchSubscription;
 import io.nats.client.impl.NatsMessage;
+import io.nats.client.support.NatsRequestCompletableFuture;
 import io.nats.jsmulti.settings.Action;
 import io.nats.jsmulti.settings.Arguments;
 import io.nats.jsmulti.settings.Context;
@@ -24,12 +26,23 @@ import io.nats.jsmulti.shared.*;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import static io.nats.jsmulti.shared.Utils.*;
 
@@ -73,23 +86,76 @@ public class JsMulti {
     }
 
     public static List<Stats> run(Context ctx, boolean printArgs, boolean reportWhenDone) throws Exception {
+        return run(ctx, null, printArgs, reportWhenDone);
+    }
+
+    /**
+     * Run on connections that are already open, i.e. to run one after another on the same connections.
+     * Thread x uses connection x modulo the number of connections. The connections are not closed.
+     * @param ctx the context
+     * @param connections the connections or null to connect by the context's connection strategy
+     * @param printArgs whether to print the context
+     * @param reportWhenDone whether to print the report
+     * @return the stats
+     * @throws Exception any exception
+     */
+    public static List<Stats> run(Context ctx, List<Connection> connections, boolean printArgs, boolean reportWhenDone) throws Exception {
         if (printArgs) {
             System.out.println(ctx);
         }
 
+        if (ctx.latencyHighRes) {
+            estimateClockOffset(ctx);
+        }
+
         ActionRunner runner = getRunner(ctx);
-        List<Stats> statsList = ctx.connShared
-            ? runShared(ctx, runner)
-            : runIndividual(ctx, runner);
+        List<Stats> statsList;
+        if (connections != null) {
+            statsList = ctx.virtualThreads
+                ? runVirtual(ctx, runner, connections)
+                : runThreads(ctx, runner, connections);
+        }
+        else if (ctx.virtualThreads) {
+            statsList = runVirtual(ctx, runner);
+        }
+        else {
+            statsList = ctx.connShared
+                ? runShared(ctx, runner)
+                : runIndividual(ctx, runner);
+        }
 
         cleanupConsumers(ctx);
 
+        if (ctx.resultsFile != null) {
+            ResultsFile.append(ctx.resultsFile, ctx, statsList);
+        }
+
         if (reportWhenDone && ctx.action != Action.REPLY) {
             Stats.report(statsList);
         }
         return statsList;
     }
 
+    // how many connections a run with the context uses when it is given open connections
+    static int connectionsNeeded(Context ctx) {
+        if (ctx.virtualThreads) {
+            return ctx.vtConnections;
+        }
+        return ctx.connShared ? 1 : ctx.threads;
+    }
+
+    // A shared connection run uses only the first connection,
+    // otherwise threads (or virtual thread groups) take the connections in order
+    static List<Connection> connectionsFor(Context ctx, List<Connection> connections) {
+        if (ctx.virtualThreads) {
+            return connections.subList(0, Math.min(ctx.vtConnections, connections.size()));
+        }
+        if (ctx.connShared) {
+            return connections.subList(0, 1);
+        }
+        return connections;
+    }
+
     private static void cleanupConsumers(Context ctx) {
         try (Connection nc = ctx.connect(OptionsFactory.OptionsType.ADMIN)) {
             JetStreamManagement jsm = nc.jetStreamManagement(ctx.getJetStreamOptions());
@@ -130,6 +196,8 @@ public class JsMulti {
 
                 case REQUEST:
                     return JsMulti::request;
+                case REQUEST_ASYNC:
+                    return JsMulti::requestAsync;
                 case REPLY:
                     return JsMulti::reply;
 
@@ -148,9 +216,23 @@ public class JsMulti {
 
                 case SUB_ITERATE:
                 case SUB_FETCH:
+                case SUB_CONSUME:
                 case SUB_ITERATE_QUEUE:
                 case SUB_FETCH_QUEUE:
+                case SUB_CONSUME_QUEUE:
                     return JsMulti::subSimple;
+
+                case KV_PUT:
+                case KV_GET:
+                case KV_UPDATE_CAS:
+                    return JsMulti::kv;
+                case KV_WATCH:
+                    return JsMulti::kvWatch;
+
+                case OS_PUT:
+                    return JsMulti::osPut;
+                case OS_GET:
+                    return JsMulti::osGet;
             }
         }
         throw new TerminalException("Invalid Action");
@@ -176,27 +258,42 @@ public class JsMulti {
     // Publish
     // ----------------------------------------------------------------------------------------------------
     interface Publisher<T> {
-        T publish(String subject, byte[] payload) throws Exception;
+        // pubTime is only set when the latency flag is on. It is the local epoch millis for the pt header,
+        // or with high resolution latency (-lhr) the server clock epoch nanos for the ptn header
+        T publish(String subject, byte[] payload, long pubTime) throws Exception;
     }
 
     interface ResultHandler<T> {
         void handle(T t);
     }
 
-    private static NatsMessage buildLatencyMessage(String subject, byte[] p) {
+    // package private for the benchmarks
+    static NatsMessage buildLatencyMessage(String subject, byte[] p, long pubTime) {
+        //noinspection ConstantConditions
+        return new NatsMessage(subject, null, new Headers().put(HDR_PUB_TIME, "" + pubTime), p);
+    }
+
+    // high resolution messages carry the server clock epoch nanos and how far off the clock correction might be
+    static NatsMessage buildLatencyMessage(Context ctx, String subject, byte[] p, long pubTime) {
+        if (!ctx.latencyHighRes) {
+            return buildLatencyMessage(subject, p, pubTime);
+        }
+        Headers h = new Headers()
+            .put(HDR_PUB_NANOS, "" + pubTime)
+            .put(HDR_PUB_UNCERTAINTY, "" + ctx.getClockOffset().getUncertaintyNanos());
         //noinspection ConstantConditions
-        return new NatsMessage(subject, null, new Headers().put(HDR_PUB_TIME, "" + System.currentTimeMillis()), p);
+        return new NatsMessage(subject, null, h, p);
     }
 
     private static void pub(Context ctx, Connection nc, Stats stats, int id) throws Exception {
         if (ctx.latencyFlag) {
-            _pub(ctx, stats, id, (s, p) -> {
-                nc.publish(buildLatencyMessage(s, p));
+            _pub(ctx, stats, id, (s, p, t) -> {
+                nc.publish(buildLatencyMessage(ctx, s, p, t));
                 return true;
             }, b -> {});
         }
         else {
-            _pub(ctx, stats, id, (s, p) -> {
+            _pub(ctx, stats, id, (s, p, t) -> {
                 nc.publish(s, p);
                 return true;
             }, b -> {});
@@ -209,21 +306,96 @@ public class JsMulti {
     }
 
     private static void request(Context ctx, Connection nc, Stats stats, int id) throws Exception {
-        if (ctx.action.isPubAsync()) {
-            _pub(ctx, stats, id, nc::request, cfm -> {});
+        _pub(ctx, stats, id, (s, p, t) -> nc.request(s, p, ctx.requestWaitDuration), m -> {});
+    }
+
+    private static final int NO_RESPONDERS_CODE = 503;
+
+    // Keeps up to max in flight requests outstanding, the same window as publish async.
+    // Replies complete on the connection's threads, so the reply latencies and failures
+    // are collected there and added to the stats when all the requests are done.
+    private static void requestAsync(Context ctx, Connection nc, Stats stats, int id) throws Exception {
+        Semaphore window = new Semaphore(ctx.maxInFlight);
+        Histogram replies = new Histogram(); // guarded by itself
+        AtomicLong timeouts = new AtomicLong();
+        AtomicLong noResponders = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long pubTarget = ctx.getPubCount(id);
+        long published = 0;
+        long unReported = 0;
+        Pacer pacer = ctx.getPacer();
+        Payloads.Cursor payloads = ctx.getPayloadCursor();
+        SubjectSpace.Chooser subjects = ctx.getSubjectChooser();
+        report(ctx, published, "Begin Requesting");
+        while (published < pubTarget) {
+            long intended = pace(ctx, pacer);
+            acquireWindow(stats, window, 1);
+            checkFailure(failure);
+            byte[] payload = payloads.next();
+            String subject = nextSubject(ctx, subjects);
+            stats.start();
+            long requestStart = intended == 0 ? System.nanoTime() : intended;
+            CompletableFuture<Message> f = nc.requestWithTimeout(subject, payload, ctx.requestWaitDuration);
+            stats.stopAndCount(payload.length, intended);
+            f.whenComplete((m, t) -> {
+                if (t == null) {
+                    long replyElapsed = System.nanoTime() - requestStart;
+                    synchronized (replies) {
+                        replies.record(replyElapsed);
+                    }
+                }
+                else if (isRequestTimeout(f, t)) {
+                    timeouts.incrementAndGet();
+                }
+                else if (isNoResponders(f, t)) {
+                    noResponders.incrementAndGet();
+                }
+                else {
+                    failure.compareAndSet(null, t);
+                }
+                window.release();
+            });
+            unReported = reportAndTrackMaybe(ctx, ++published, ++unReported, "Requested", stats);
         }
-        else {
-            _pub(ctx, stats, id, (s, p) -> nc.request(s, p, ctx.requestWaitDuration), m -> {});
+        // wait for the requests still outstanding
+        acquireWindow(stats, window, ctx.maxInFlight);
+        synchronized (replies) {
+            stats.recordOps(Stats.Op.REPLY, replies);
+        }
+        stats.countRequestFailures(timeouts.get(), noResponders.get());
+        checkFailure(failure);
+        report(ctx, published, "Completed Requesting");
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
+    private static boolean isRequestTimeout(CompletableFuture<Message> f, Throwable t) {
+        if (f instanceof NatsRequestCompletableFuture && ((NatsRequestCompletableFuture)f).wasCancelledTimedOut()) {
+            return true;
+        }
+        return unwrap(t) instanceof TimeoutException;
+    }
+
+    // A no responders status either cancels the future or, when the connection
+    // reports no responders, completes it with a 503 status exception.
+    private static boolean isNoResponders(CompletableFuture<Message> f, Throwable t) {
+        Throwable cause = unwrap(t);
+        if (cause instanceof JetStreamStatusException) {
+            return ((JetStreamStatusException)cause).getStatus().getCode() == NO_RESPONDERS_CODE;
         }
+        return cause instanceof CancellationException
+            && !(f instanceof NatsRequestCompletableFuture && ((NatsRequestCompletableFuture)f).wasCancelledClosing());
     }
 
     private static void pubSync(Context ctx, Connection nc, Stats stats, int id) throws Exception {
         final JetStream js = nc.jetStream(ctx.getJetStreamOptions());
         if (ctx.latencyFlag) {
-            _pub(ctx, stats, id, (s, p) -> js.publish(buildLatencyMessage(s, p)), na -> {});
+            _pub(ctx, stats, id, (s, p, t) -> js.publish(buildLatencyMessage(ctx, s, p, t)), na -> {});
         }
         else {
-            _pub(ctx, stats, id, js::publish, na -> {});
+            _pub(ctx, stats, id, (s, p, t) -> js.publish(s, p), na -> {});
         }
     }
 
@@ -248,8 +420,8 @@ public class JsMulti {
         }
 
         Publisher<PublishAck> publisher = ctx.latencyFlag
-            ? (s, p) -> { nc.publish(buildLatencyMessage(s, p)); return null; }
-            : (s, p) -> { nc.publish(s, p); return null; };
+            ? (s, p, t) -> { nc.publish(buildLatencyMessage(ctx, s, p, t)); return null; }
+            : (s, p, t) -> { nc.publish(s, p); return null; };
 
         _pub(ctx, stats, id, publisher, pa -> {});
 
@@ -271,14 +443,19 @@ public class JsMulti {
         long pubTarget = ctx.getPubCount(id);
         long published = 0;
         long unReported = 0;
+        Pacer pacer = ctx.getPacer();
+        Payloads.Cursor payloads = ctx.getPayloadCursor();
+        SubjectSpace.Chooser subjects = ctx.getSubjectChooser();
         report(ctx, published, "Begin Publishing");
         while (published < pubTarget) {
-            jitter(ctx);
-            byte[] payload = ctx.getPayload();
+            long intended = pace(ctx, pacer);
+            byte[] payload = payloads.next();
+            String subject = nextSubject(ctx, subjects);
+            long pubTime = pubTime(ctx, pacer, intended);
             stats.start();
             try {
-                rh.handle(p.publish(ctx.subject, payload));
-                stats.stopAndCount(ctx.payloadSize);
+                rh.handle(p.publish(subject, payload, pubTime));
+                stats.stopAndCount(payload.length, intended);
                 unReported = reportAndTrackMaybe(ctx, ++published, ++unReported, "Published", stats);
             }
             catch (IOException ioe) {
@@ -295,48 +472,151 @@ public class JsMulti {
         JetStream js = nc.jetStream(ctx.getJetStreamOptions());
         Publisher<CompletableFuture<PublishAck>> publisher;
         if (ctx.latencyFlag) {
-            publisher = (s, p) -> js.publishAsync(buildLatencyMessage(s, p));
+            publisher = (s, p, t) -> js.publishAsync(buildLatencyMessage(ctx, s, p, t));
         }
         else {
-            publisher = js::publishAsync;
+            publisher = (s, p, t) -> js.publishAsync(s, p);
         }
 
-        List<CompletableFuture<PublishAck>> futures = new ArrayList<>();
-        int roundCount = 0;
+        // A sliding window of publishes waiting for their ack. The ack releases its permit
+        // as soon as it arrives, so the publisher only waits when the window is full.
+        Semaphore window = new Semaphore(ctx.maxInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
         long pubTarget = ctx.getPubCount(id);
         long published = 0;
         long unReported = 0;
+        Pacer pacer = ctx.getPacer();
+        Payloads.Cursor payloads = ctx.getPayloadCursor();
+        SubjectSpace.Chooser subjects = ctx.getSubjectChooser();
         report(ctx, published, "Begin Publishing");
         while (published < pubTarget) {
-            if (++roundCount >= ctx.roundSize) {
-                processFutures(futures, stats);
-                roundCount = 0;
-            }
-            jitter(ctx);
-            byte[] payload = ctx.getPayload();
+            long intended = pace(ctx, pacer);
+            acquireWindow(stats, window, 1);
+            checkFailure(failure);
+            byte[] payload = payloads.next();
+            String subject = nextSubject(ctx, subjects);
+            long pubTime = pubTime(ctx, pacer, intended);
             stats.start();
-            futures.add(publisher.publish(ctx.subject, payload));
-            stats.stopAndCount(ctx.payloadSize);
+            CompletableFuture<PublishAck> f = publisher.publish(subject, payload, pubTime);
+            stats.stopAndCount(payload.length, intended);
+            f.whenComplete((pa, t) -> {
+                if (t != null) {
+                    failure.compareAndSet(null, t);
+                }
+                window.release();
+            });
             unReported = reportAndTrackMaybe(ctx, ++published, ++unReported, "Published", stats);
         }
+        // wait for the acks still in flight
+        acquireWindow(stats, window, ctx.maxInFlight);
+        checkFailure(failure);
         report(ctx, published, "Completed Publishing");
     }
 
-    private static void processFutures(List<CompletableFuture<PublishAck>> futures, Stats stats) {
-        stats.start();
-        while (!futures.isEmpty()) {
+    // Time spent blocked on a full window is counted in the elapsed, so rates include waiting for acks,
+    // but it is recorded in its own histogram, not as publish time.
+    private static void acquireWindow(Stats stats, Semaphore window, int permits) throws InterruptedException {
+        if (!window.tryAcquire(permits)) {
+            long start = System.nanoTime();
+            window.acquire(permits);
+            long blocked = System.nanoTime() - start;
+            stats.manualElapsed(blocked);
+            stats.recordOp(Stats.Op.WINDOW, blocked);
+        }
+    }
+
+    private static void checkFailure(AtomicReference<Throwable> failure) {
+        Throwable t = failure.get();
+        if (t != null) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    // The subject to publish to, a precomputed keyed subject when there is a subject template
+    private static String nextSubject(Context ctx, SubjectSpace.Chooser subjects) {
+        return subjects == null ? ctx.subject : subjects.next();
+    }
+
+    // When there is a pacer, wait for the next slot and return its intended time, otherwise jitter.
+    // A return of 0 means there is no intended time.
+    private static long pace(Context ctx, Pacer pacer) {
+        if (pacer == null) {
+            jitter(ctx);
+            return 0;
+        }
+        return pacer.acquire();
+    }
+
+    // The latency header time comes from the intended time when pacing
+    // so the latency numbers are also corrected for coordinated omission
+    private static long pubTime(Context ctx, Pacer pacer, long intended) {
+        if (!ctx.latencyFlag) {
+            return 0;
+        }
+        if (ctx.latencyHighRes) {
+            return pacer == null ? ctx.latencyTime() : ctx.getClockOffset().toServer(toEpochNanos(intended));
+        }
+        return pacer == null ? System.currentTimeMillis() : pacer.toEpochMillis(intended);
+    }
+
+    // ----------------------------------------------------------------------------------------------------
+    // High resolution latency clock - before the run, each process estimates the offset from its clock
+    // to the server clock, NTP style. Each exchange is a publish to the clock stream timed locally,
+    // the server stamps the stored message somewhere between the send and the ack. Publishers put
+    // publish times on the server clock in the header and receivers take received times on the server clock,
+    // so latency across hosts is corrected for the clock skew between them.
+    // ----------------------------------------------------------------------------------------------------
+    // the clock stream is this run's own, so concurrent runs don't share it, and it is deleted when done.
+    // The offset is to the clock of the clock stream's leader, in a cluster that may not be the data stream's leader.
+    static final String CLOCK_STREAM = "jsmulti-clock";
+    static final String CLOCK_SUBJECT = "jsmulti.clock";
+    static final int CLOCK_EXCHANGES = 16;
+    private static final int SUBJECTS_OVERLAP_CODE = 10065;
+
+    private static void estimateClockOffset(Context ctx) throws Exception {
+        String stream = CLOCK_STREAM + "-" + ctx.id;
+        String subject = CLOCK_SUBJECT + "." + ctx.id;
+        try (Connection nc = ctx.connect(OptionsFactory.OptionsType.ADMIN)) {
+            JetStreamManagement jsm = nc.jetStreamManagement(ctx.getJetStreamOptions());
             try {
-                futures.remove(0).get();
+                jsm.addStream(StreamConfiguration.builder()
+                    .name(stream)
+                    .subjects(subject)
+                    .storageType(StorageType.Memory)
+                    .maxMessages(CLOCK_EXCHANGES)
+                    .build());
+            }
+            catch (JetStreamApiException e) {
+                if (e.getApiErrorCode() != SUBJECTS_OVERLAP_CODE) {
+                    throw e;
+                }
+                // some stream already takes the clock subject, publishing there would add to it
+                ctx.app.reportErr("The clock subject " + subject + " overlaps an existing stream, running without a clock offset.");
+                ctx.setClockOffset(ClockOffset.NONE);
+                ctx.app.report(ClockOffset.NONE.toString());
+                return;
             }
-            catch (ExecutionException e) {
-                throw new RuntimeException(e);
+
+            try {
+                JetStream js = nc.jetStream(ctx.getJetStreamOptions());
+                long[] sent = new long[CLOCK_EXCHANGES];
+                long[] stamped = new long[CLOCK_EXCHANGES];
+                long[] received = new long[CLOCK_EXCHANGES];
+                for (int x = 0; x < CLOCK_EXCHANGES; x++) {
+                    sent[x] = epochNanos();
+                    PublishAck pa = js.publish(subject, null);
+                    received[x] = epochNanos();
+                    ZonedDateTime stamp = jsm.getMessage(stream, pa.getSeqno()).getTime();
+                    stamped[x] = stamp.toEpochSecond() * 1_000_000_000L + stamp.getNano();
+                }
+                ClockOffset clockOffset = ClockOffset.estimate(sent, stamped, received);
+                ctx.setClockOffset(clockOffset);
+                ctx.app.report(clockOffset.toString());
             }
-            catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException(e);
+            finally {
+                try { jsm.deleteStream(stream); } catch (JetStreamApiException ignore) {}
             }
         }
-        stats.stop();
     }
 
     // ----------------------------------------------------------------------------------------------------
@@ -350,6 +630,7 @@ public class JsMulti {
     // Push
     // ----------------------------------------------------------------------------------------------------
     private static final Object CREATE_CONSUMER_LOCK = new Object();
+    private static final long CONSUME_CHECK_MILLIS = 10;
 
     private static void reply(Context ctx, Connection nc, Stats stats, int id) throws Exception {
         Subscription sub;
@@ -387,16 +668,16 @@ public class JsMulti {
         long rcvd = 0;
         long unReported = 0;
         long noMessageTotalElapsed = 0;
-        AtomicLong counter = ctx.getSubscribeCounter(subName);
+        LongAdder counter = ctx.getSubscribeCounter(subName);
         report(ctx, rcvd, "Begin Reading");
-        while (counter.get() < ctx.messageCount) {
+        while (counter.sum() < ctx.messageCount) {
             stats.start();
             Message m = syncConsumer.next();
             long hold = stats.elapsed();
-            long received = System.currentTimeMillis();
+            long received = ctx.latencyTime();
             if (m == null) {
                 noMessageTotalElapsed += hold;
-                if (noMessageTotalElapsed > ctx.readMaxWaitDuration.toMillis()) {
+                if (noMessageTotalElapsed > ctx.readMaxWaitDuration.toNanos()) {
                     report(ctx, rcvd, "Stopped At Max Wait, Finished Reading Messages");
                     return;
                 }
@@ -407,7 +688,7 @@ public class JsMulti {
                 rh.handle(m);
                 stats.manualElapsed(hold);
                 stats.count(m, received);
-                counter.incrementAndGet();
+                counter.increment();
                 unReported = reportAndTrackMaybe(ctx, ++rcvd, ++unReported, "Messages Read", stats);
             }
         }
@@ -449,34 +730,36 @@ public class JsMulti {
         long unAckedCount = 0;
         long unReported = 0;
         long noMessageTotalElapsed = 0;
-        AtomicLong counter = ctx.getSubscribeCounter(durable);
+        LongAdder counter = ctx.getSubscribeCounter(durable);
         report(ctx, rcvd, "Begin Reading");
-        while (counter.get() < ctx.messageCount) {
-            stats.start();
-            Message m = syncConsumer.next();
-            long hold = stats.elapsed();
-            long received = System.currentTimeMillis();
-            if (m == null) {
-                noMessageTotalElapsed += hold;
-                if (noMessageTotalElapsed > ctx.readMaxWaitDuration.toMillis()) {
-                    report(ctx, rcvd, "Stopped At Max Wait, Finished Reading Messages");
-                    return;
+        try (AckSender ackSender = newAckSender(ctx, stats)) {
+            while (counter.sum() < ctx.messageCount) {
+                stats.start();
+                Message m = syncConsumer.next();
+                long hold = stats.elapsed();
+                long received = ctx.latencyTime();
+                if (m == null) {
+                    noMessageTotalElapsed += hold;
+                    if (noMessageTotalElapsed > ctx.readMaxWaitDuration.toNanos()) {
+                        report(ctx, rcvd, "Stopped At Max Wait, Finished Reading Messages");
+                        return;
+                    }
+                    acceptHoldOnceStarted(stats, rcvd, hold, ctx);
                 }
-                acceptHoldOnceStarted(stats, rcvd, hold, ctx);
-            }
-            else {
-                noMessageTotalElapsed = 0;
-                stats.manualElapsed(hold);
-                stats.count(m, received);
-                counter.incrementAndGet();
-                if ( (lastUnAcked = ackMaybe(ctx, stats, m, ++unAckedCount)) == null ) {
-                    unAckedCount = 0;
+                else {
+                    noMessageTotalElapsed = 0;
+                    stats.manualElapsed(hold);
+                    stats.count(m, received);
+                    counter.increment();
+                    if ( (lastUnAcked = ackMaybe(ctx, stats, ackSender, m, ++unAckedCount)) == null ) {
+                        unAckedCount = 0;
+                    }
+                    unReported = reportAndTrackMaybe(ctx, ++rcvd, ++unReported, "Messages Read", stats);
                 }
-                unReported = reportAndTrackMaybe(ctx, ++rcvd, ++unReported, "Messages Read", stats);
             }
-        }
-        if (lastUnAcked != null) {
-            _ack(stats, lastUnAcked);
+            if (lastUnAcked != null) {
+                _ack(stats, lastUnAcked);
+            }
         }
         report(ctx, rcvd, "Finished Reading Messages");
     }
@@ -525,19 +808,130 @@ public class JsMulti {
             });
         }
         else if (ctx.action == Action.SUB_ITERATE || ctx.action == Action.SUB_ITERATE_QUEUE) {
-            ConsumeOptions opts = ConsumeOptions.builder().batchSize(ctx.batchSize).build();
-            try (IterableConsumer ic = cc.iterate(opts)) {
+            try (IterableConsumer ic = cc.iterate(getConsumeOptions(ctx))) {
                 _jsSyncConsume(ctx, stats, durable, () -> ic.nextMessage(ctx.readTimeoutDuration));
             }
         }
-//        else if (ctx.action == Action.SUB_CONSUME) {
-// TODO
-//        }
+        else if (ctx.action == Action.SUB_CONSUME || ctx.action == Action.SUB_CONSUME_QUEUE) {
+            _jsConsume(ctx, stats, durable, cc);
+        }
         else {
             throw new TerminalException("Action Not Implemented: " + ctx.action.getLabel());
         }
     }
 
+    private static ConsumeOptions getConsumeOptions(Context ctx) {
+        ConsumeOptions.Builder builder = ConsumeOptions.builder()
+            .batchSize(ctx.batchSize)
+            .thresholdPercent(ctx.thresholdPercent);
+        if (ctx.batchBytes > 0) {
+            builder.batchBytes(ctx.batchBytes);
+        }
+        return builder.build();
+    }
+
+    // ----------------------------------------------------------------------------------------------------
+    // Consume - callback delivery, the handler runs on the consumer's dispatcher thread
+    // while the runner thread watches for the message count or the max wait
+    // ----------------------------------------------------------------------------------------------------
+    static class ConsumeHandler implements MessageHandler {
+        final Context ctx;
+        final Stats stats;
+        final LongAdder counter;
+        final AckSender ackSender;
+        long rcvd = 0;
+        long unAckedCount = 0;
+        long unReported = 0;
+        Message lastUnAcked = null;
+        long firstNanos = 0;
+        long inlineAckNanos = 0;
+        volatile long lastNanos = 0;
+        boolean done = false;
+
+        ConsumeHandler(Context ctx, Stats stats, LongAdder counter) {
+            this.ctx = ctx;
+            this.stats = stats;
+            this.counter = counter;
+            ackSender = newAckSender(ctx, stats);
+        }
+
+        @Override
+        public synchronized void onMessage(Message m) {
+            if (done) {
+                return; // not acked, it will be redelivered to whoever is still consuming
+            }
+            long received = ctx.latencyTime();
+            if (firstNanos == 0) {
+                firstNanos = System.nanoTime();
+            }
+            stats.count(m, received);
+            counter.increment();
+            long ackStart = System.nanoTime();
+            if ((lastUnAcked = ackMaybe(ctx, stats, ackSender, m, ++unAckedCount)) == null) {
+                unAckedCount = 0;
+            }
+            if (ackSender == null) {
+                inlineAckNanos += System.nanoTime() - ackStart;
+            }
+            unReported = reportAndTrackMaybe(ctx, ++rcvd, ++unReported, "Messages Read", stats);
+            lastNanos = System.nanoTime();
+        }
+
+        synchronized void finish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (lastUnAcked != null) {
+                long ackStart = System.nanoTime();
+                _ack(stats, lastUnAcked);
+                inlineAckNanos += System.nanoTime() - ackStart;
+                lastUnAcked = null;
+            }
+            if (ackSender != null) {
+                ackSender.close();
+            }
+            // Like the sync consumers, the time waiting for the first message is not counted.
+            // The handler is busy or waiting for the next message from the first to the last message,
+            // so the elapsed is that wall time. Inline acks already added their time, so add the rest.
+            // This uses the handler's own ack time, not the stats elapsed, which is a group total
+            // when the stats are shared by virtual thread clients.
+            if (firstNanos != 0) {
+                long wall = System.nanoTime() - firstNanos;
+                stats.manualElapsed(Math.max(0, wall - inlineAckNanos));
+            }
+        }
+    }
+
+    private static void _jsConsume(Context ctx, Stats stats, String durable, ConsumerContext cc) throws Exception {
+        LongAdder counter = ctx.getSubscribeCounter(durable);
+        ConsumeHandler handler = new ConsumeHandler(ctx, stats, counter);
+        long maxWaitNanos = ctx.readMaxWaitDuration.toNanos();
+        long startNanos = System.nanoTime();
+        report(ctx, 0, "Begin Consuming");
+        try (MessageConsumer mc = cc.consume(getConsumeOptions(ctx), handler)) {
+            boolean waitingReported = false;
+            while (counter.sum() < ctx.messageCount) {
+                Utils.sleep(CONSUME_CHECK_MILLIS);
+                long last = handler.lastNanos;
+                if (last == 0 && !waitingReported) {
+                    ctx.app.report("Waiting for first message.");
+                    waitingReported = true;
+                }
+                if (System.nanoTime() - (last == 0 ? startNanos : last) > maxWaitNanos) {
+                    report(ctx, handler.rcvd, "Stopped At Max Wait, Finished Consuming Messages");
+                    break;
+                }
+            }
+            mc.stop();
+        }
+        finally {
+            // sends the last ack and closes the ack sender even when consuming failed
+            handler.finish();
+        }
+        report(ctx, handler.rcvd, "Finished Consuming Messages");
+    }
+
     // ----------------------------------------------------------------------------------------------------
     // Pull
     // ----------------------------------------------------------------------------------------------------
@@ -568,34 +962,37 @@ public class JsMulti {
         }
     }
 
-    private static void _subPullFetch(Context ctx, Stats stats, JetStreamSubscription sub, String durable) {
+    private static void _subPullFetch(Context ctx, Stats stats, JetStreamSubscription sub, String durable) throws Exception {
         long rcvd = 0;
         Message lastUnAcked = null;
         long unAckedCount = 0;
         long unReported = 0;
-        AtomicLong counter = ctx.getSubscribeCounter(durable);
+        LongAdder counter = ctx.getSubscribeCounter(durable);
         report(ctx, rcvd, "Begin Reading");
-        while (counter.get() < ctx.messageCount) {
-            stats.start();
-            List<Message> list = sub.fetch(ctx.batchSize, ctx.readTimeoutDuration);
-            long hold = stats.elapsed();
-            long received = System.currentTimeMillis();
-            int lc = list.size();
-            if (lc > 0) {
-                for (Message m : list) {
-                    stats.count(m, received);
-                    counter.incrementAndGet();
-                    if ((lastUnAcked = ackMaybe(ctx, stats, m, ++unAckedCount)) == null) {
-                        unAckedCount = 0;
+        try (AckSender ackSender = newAckSender(ctx, stats)) {
+            while (counter.sum() < ctx.messageCount) {
+                stats.start();
+                List<Message> list = sub.fetch(ctx.batchSize, ctx.readTimeoutDuration);
+                long hold = stats.elapsed();
+                stats.recordOp(Stats.Op.FETCH, hold);
+                long received = ctx.latencyTime();
+                int lc = list.size();
+                if (lc > 0) {
+                    stats.countBatch(list, received);
+                    counter.add(lc);
+                    for (Message m : list) {
+                        if ((lastUnAcked = ackMaybe(ctx, stats, ackSender, m, ++unAckedCount)) == null) {
+                            unAckedCount = 0;
+                        }
                     }
+                    rcvd += lc;
+                    unReported = reportAndTrackMaybe(ctx, rcvd, unReported + lc, "Messages Read", stats);
                 }
-                rcvd += lc;
-                unReported = reportAndTrackMaybe(ctx, rcvd, unReported + lc, "Messages Read", stats);
+                acceptHoldOnceStarted(stats, rcvd, hold, ctx);
+            }
+            if (lastUnAcked != null) {
+                _ack(stats, lastUnAcked);
             }
-            acceptHoldOnceStarted(stats, rcvd, hold, ctx);
-        }
-        if (lastUnAcked != null) {
-            _ack(stats, lastUnAcked);
         }
         report(ctx, rcvd, "Finished Reading Messages");
     }
@@ -606,6 +1003,211 @@ public class JsMulti {
         reader.stop();
     }
 
+    // ----------------------------------------------------------------------------------------------------
+    // Key Value - the keys come from the key space, the values are the payloads
+    // ----------------------------------------------------------------------------------------------------
+    private static final int STREAM_NOT_FOUND_CODE = 10059;
+    private static final int WRONG_LAST_SEQUENCE_CODE = 10071;
+
+    private static KeyValue kvBucket(Context ctx, Connection nc) throws Exception {
+        KeyValueOptions kvo = KeyValueOptions.builder().jetStreamOptions(ctx.getJetStreamOptions()).build();
+        // only one thread makes the bucket if it does not exist yet
+        synchronized (CREATE_CONSUMER_LOCK) {
+            KeyValueManagement kvm = nc.keyValueManagement(kvo);
+            try {
+                kvm.getStatus(ctx.kvBucket);
+            }
+            catch (JetStreamApiException e) {
+                if (e.getApiErrorCode() != STREAM_NOT_FOUND_CODE) {
+                    throw e;
+                }
+                kvm.create(KeyValueConfiguration.builder()
+                    .name(ctx.kvBucket)
+                    .maxHistoryPerKey(ctx.kvHistory)
+                    .build());
+            }
+        }
+        return nc.keyValue(ctx.kvBucket, kvo);
+    }
+
+    // Put, get and update are the same loop, the read percent decides
+    // if each operation is a get or the write for the action.
+    private static void kv(Context ctx, Connection nc, Stats stats, int id) throws Exception {
+        KeyValue kv = kvBucket(ctx, nc);
+        long opTarget = ctx.getPubCount(id);
+        long ops = 0;
+        long unReported = 0;
+        Pacer pacer = ctx.getPacer();
+        Payloads.Cursor payloads = ctx.getPayloadCursor();
+        SubjectSpace.Chooser keys = ctx.getSubjectChooser();
+        SplittableRandom mix = new SplittableRandom(Payloads.SEED + id);
+        report(ctx, ops, "Begin " + ctx.action);
+        while (ops < opTarget) {
+            long intended = pace(ctx, pacer);
+            String key = keys.next();
+            if (ctx.kvReadPercent > 0 && mix.nextInt(100) < ctx.kvReadPercent) {
+                stats.start();
+                KeyValueEntry entry = kv.get(key);
+                stats.stopAndCount(Stats.Op.KV_GET, entry == null ? 0 : entry.getDataLen(), intended);
+            }
+            else {
+                byte[] value = payloads.next();
+                if (ctx.action == Action.KV_UPDATE_CAS) {
+                    _kvUpdateCas(kv, stats, key, value, intended);
+                }
+                else {
+                    stats.start();
+                    kv.put(key, value);
+                    stats.stopAndCount(Stats.Op.KV_PUT, value.length, intended);
+                }
+            }
+            unReported = reportAndTrackMaybe(ctx, ++ops, ++unReported, "Operations", stats);
+        }
+        report(ctx, ops, "Completed " + ctx.action);
+    }
+
+    // Read the revision then update expecting it. If another thread or client changed the key
+    // in between, the server rejects the update, which is counted as a conflict, not retried.
+    private static void _kvUpdateCas(KeyValue kv, Stats stats, String key, byte[] value, long intended) throws Exception {
+        stats.start();
+        KeyValueEntry entry = kv.get(key);
+        stats.stop(Stats.Op.KV_GET);
+        stats.start();
+        try {
+            if (entry == null || entry.getOperation() != KeyValueOperation.PUT) {
+                kv.create(key, value);
+            }
+            else {
+                kv.update(key, value, entry.getRevision());
+            }
+            stats.stopAndCount(Stats.Op.KV_UPDATE, value.length, intended);
+        }
+        catch (JetStreamApiException e) {
+            if (e.getApiErrorCode() != WRONG_LAST_SEQUENCE_CODE) {
+                throw e;
+            }
+            stats.stop();
+            stats.countCasConflict();
+        }
+    }
+
+    // Each watcher sees every update, so each one reads to the message count.
+    // The delivery latency is from the server timestamp of the entry.
+    private static void kvWatch(Context ctx, Connection nc, Stats stats, int id) throws Exception {
+        KeyValue kv = kvBucket(ctx, nc);
+        BlockingQueue<KeyValueEntry> entries = new LinkedBlockingQueue<>();
+        NatsKeyValueWatchSubscription sub = kv.watchAll(new KeyValueWatcher() {
+            @Override
+            public void watch(KeyValueEntry entry) {
+                entries.add(entry);
+            }
+
+            @Override
+            public void endOfData() {}
+        }, KeyValueWatchOption.UPDATES_ONLY);
+
+        try {
+            long rcvd = 0;
+            long unReported = 0;
+            long noEntryTotalElapsed = 0;
+            long timeoutMillis = ctx.readTimeoutDuration.toMillis();
+            report(ctx, rcvd, "Begin Watching");
+            while (rcvd < ctx.messageCount) {
+                stats.start();
+                KeyValueEntry entry = entries.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+                long hold = stats.elapsed();
+                if (entry == null) {
+                    noEntryTotalElapsed += hold;
+                    if (noEntryTotalElapsed > ctx.readMaxWaitDuration.toNanos()) {
+                        report(ctx, rcvd, "Stopped At Max Wait, Finished Watching");
+                        return;
+                    }
+                    acceptHoldOnceStarted(stats, rcvd, hold, ctx);
+                }
+                else {
+                    noEntryTotalElapsed = 0;
+                    stats.manualElapsed(hold, 1, entry.getDataLen());
+                    Duration delivery = Duration.between(entry.getCreated().toInstant(), Instant.now());
+                    stats.recordOp(Stats.Op.KV_WATCH, Math.max(0, delivery.toNanos()));
+                    unReported = reportAndTrackMaybe(ctx, ++rcvd, ++unReported, "Entries Watched", stats);
+                }
+            }
+            report(ctx, rcvd, "Finished Watching");
+        }
+        finally {
+            sub.unsubscribe();
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------
+    // Object Store - each message is a whole object, the object names come from the key space
+    // ----------------------------------------------------------------------------------------------------
+    private static ObjectStore osBucket(Context ctx, Connection nc) throws Exception {
+        ObjectStoreOptions oso = ObjectStoreOptions.builder().jetStreamOptions(ctx.getJetStreamOptions()).build();
+        // only one thread makes the bucket if it does not exist yet
+        synchronized (CREATE_CONSUMER_LOCK) {
+            ObjectStoreManagement osm = nc.objectStoreManagement(oso);
+            try {
+                osm.getStatus(ctx.osBucket);
+            }
+            catch (JetStreamApiException e) {
+                if (e.getApiErrorCode() != STREAM_NOT_FOUND_CODE) {
+                    throw e;
+                }
+                osm.create(ObjectStoreConfiguration.builder()
+                    .name(ctx.osBucket)
+                    .storageType(ctx.osStorageType)
+                    .build());
+            }
+        }
+        return nc.objectStore(ctx.osBucket, oso);
+    }
+
+    // Puts go through the key space in order, each thread from its own starting key,
+    // so putting at least key space objects leaves every name there for the gets.
+    private static void osPut(Context ctx, Connection nc, Stats stats, int id) throws Exception {
+        ObjectStore os = osBucket(ctx, nc);
+        SubjectSpace names = ctx.getSubjectSpace();
+        long putTarget = ctx.getPubCount(id);
+        long firstKey = (id - 1) * putTarget;
+        long put = 0;
+        long unReported = 0;
+        Pacer pacer = ctx.getPacer();
+        Payloads.Cursor payloads = ctx.getPayloadCursor();
+        report(ctx, put, "Begin Putting Objects");
+        while (put < putTarget) {
+            long intended = pace(ctx, pacer);
+            String name = names.subject((int)((firstKey + put) % names.getKeySpace()));
+            ObjectMeta meta = ObjectMeta.builder(name).chunkSize(ctx.osChunkSize).build();
+            ObjectStreams.Source source = new ObjectStreams.Source(stats, payloads.next(), ctx.osObjectSize);
+            stats.start();
+            os.put(meta, source);
+            stats.stopAndCount(Stats.Op.OS_PUT, ctx.osObjectSize, intended);
+            unReported = reportAndTrackMaybe(ctx, ++put, ++unReported, "Objects Put", stats);
+        }
+        report(ctx, put, "Completed Putting Objects");
+    }
+
+    private static void osGet(Context ctx, Connection nc, Stats stats, int id) throws Exception {
+        ObjectStore os = osBucket(ctx, nc);
+        long getTarget = ctx.getPubCount(id);
+        long got = 0;
+        long unReported = 0;
+        Pacer pacer = ctx.getPacer();
+        SubjectSpace.Chooser names = ctx.getSubjectChooser();
+        report(ctx, got, "Begin Getting Objects");
+        while (got < getTarget) {
+            long intended = pace(ctx, pacer);
+            String name = names.next();
+            stats.start();
+            ObjectStreams.Sink sink = new ObjectStreams.Sink(stats);
+            os.get(name, sink);
+            stats.stopAndCount(Stats.Op.OS_GET, sink.getBytes(), intended);
+            unReported = reportAndTrackMaybe(ctx, ++got, ++unReported, "Objects Got", stats);
+        }
+        report(ctx, got, "Completed Getting Objects");
+    }
+
     // ----------------------------------------------------------------------------------------------------
     // Helpers
     // ----------------------------------------------------------------------------------------------------
@@ -623,8 +1225,21 @@ public class JsMulti {
         return ioe.getMessage().equals("Timeout or no response waiting for NATS JetStream server");
     }
 
+    /**
+     * An ack sender for one consuming thread when acking asynchronously
+     * @return the sender or null to ack inline
+     */
+    private static AckSender newAckSender(Context ctx, Stats stats) {
+        return ctx.isAckAsync() ? new AckSender(stats, ctx.ackPolicy, ctx.ackBatch, ctx.ackFlushMillis) : null;
+    }
+
     // This method returns null if message is acked or policy is None
-    private static Message ackMaybe(Context ctx, Stats stats, Message m, long unAckedCount) {
+    private static Message ackMaybe(Context ctx, Stats stats, AckSender ackSender, Message m, long unAckedCount) {
+        if (ackSender != null) {
+            // the sender coalesces by count and time, for ack policy all instead of the ack all frequency
+            ackSender.add(m);
+            return null;
+        }
         if (ctx.ackPolicy == AckPolicy.Explicit) {
             _ack(stats, m);
             return null;
@@ -643,34 +1258,45 @@ public class JsMulti {
     private static void _ack(Stats stats, Message m) {
         stats.start();
         m.ack();
-        stats.stop();
+        stats.stop(Stats.Op.ACK);
     }
 
     private static List<Stats> runShared(Context ctx, ActionRunner runner) throws Exception {
         try (Connection nc = ctx.connect()) {
-            List<Stats> statsList = new ArrayList<>();
-            List<Thread> threads = new ArrayList<>();
-            for (int x = 0; x < ctx.threads; x++) {
-                final int id = x + 1;
-                final Stats stats = new Stats(ctx);
-                statsList.add(stats);
-                Thread t = new Thread(() -> {
-                    try {
-                        runner.run(ctx, nc, stats, id);
-                    } catch (Exception e) {
-                        stats.setException(e);
-                        ctx.app.reportEx(e);
+            return runThreads(ctx, runner, Collections.singletonList(nc));
+        }
+    }
+
+    private static List<Stats> runThreads(Context ctx, ActionRunner runner, List<Connection> conns) throws Exception {
+        List<Stats> statsList = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        ProfileSampler sampler = ctx.profile ? new ProfileSampler(ProfileSampler.DEFAULT_SAMPLE_MILLIS) : null;
+        for (int x = 0; x < ctx.threads; x++) {
+            final int id = x + 1;
+            final Connection nc = conns.get(x % conns.size());
+            final Stats stats = new Stats(ctx);
+            statsList.add(stats);
+            Thread t = new Thread(() -> {
+                try {
+                    runner.run(ctx, nc, stats, id);
+                } catch (Exception e) {
+                    stats.setException(e);
+                    ctx.app.reportEx(e);
+                } finally {
+                    if (sampler != null) {
+                        sampler.threadFinished();
                     }
-                }, ctx.getLabel(id));
-                threads.add(t);
-            }
-            return endRun(ctx, statsList, threads);
+                }
+            }, ctx.getLabel(id));
+            threads.add(t);
         }
+        return endRun(ctx, statsList, threads, sampler);
     }
 
     private static List<Stats> runIndividual(Context ctx, ActionRunner runner) throws Exception {
         List<Stats> statsList = new ArrayList<>();
         List<Thread> threads = new ArrayList<>();
+        ProfileSampler sampler = ctx.profile ? new ProfileSampler(ProfileSampler.DEFAULT_SAMPLE_MILLIS) : null;
         for (int x = 0; x < ctx.threads; x++) {
             final int id = x + 1;
             final Stats stats = new Stats(ctx);
@@ -681,16 +1307,93 @@ public class JsMulti {
                 } catch (Exception e) {
                     stats.setException(e);
                     ctx.app.reportEx(e);
+                } finally {
+                    if (sampler != null) {
+                        sampler.threadFinished();
+                    }
                 }
             }, ctx.getLabel(id));
             threads.add(t);
         }
-        return endRun(ctx, statsList, threads);
+        return endRun(ctx, statsList, threads, sampler);
+    }
+
+    // Each client runs on its own virtual thread. The clients are spread over the connections,
+    // and the clients on a connection share one Stats, so there is one row per connection.
+    private static List<Stats> runVirtual(Context ctx, ActionRunner runner) throws Exception {
+        List<Connection> conns = new ArrayList<>();
+        try {
+            for (int c = 0; c < ctx.vtConnections; c++) {
+                conns.add(ctx.connect());
+            }
+            return runVirtual(ctx, runner, conns);
+        }
+        finally {
+            for (Connection nc : conns) {
+                nc.close();
+            }
+        }
+    }
+
+    private static List<Stats> runVirtual(Context ctx, ActionRunner runner, List<Connection> conns) throws Exception {
+        if (!VirtualThreads.isAvailable()) {
+            ctx.app.report("Virtual threads are not available in this runtime, using platform threads.");
+        }
+        int groups = Math.min(conns.size(), ctx.threads);
+        List<SharedStats> statsList = new ArrayList<>();
+        for (int c = 0; c < groups; c++) {
+            int clients = ctx.threads / groups + (c < ctx.threads % groups ? 1 : 0);
+            statsList.add(new SharedStats(ctx, clients));
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int x = 0; x < ctx.threads; x++) {
+            final int id = x + 1;
+            final Connection nc = conns.get(x % groups);
+            final SharedStats stats = statsList.get(x % groups);
+            threads.add(VirtualThreads.newThread(() -> {
+                try {
+                    runner.run(ctx, nc, stats, id);
+                } catch (Exception e) {
+                    stats.setException(e);
+                    ctx.app.reportEx(e);
+                }
+            }, ctx.getLabel(id)));
+        }
+        List<Stats> runStats = new ArrayList<>(statsList);
+        // virtual threads have no cpu time or allocation of their own, only the gc is sampled
+        ProfileSampler sampler = ctx.profile ? new ProfileSampler(ProfileSampler.DEFAULT_SAMPLE_MILLIS) : null;
+        runStarted(ctx, runStats);
+        if (sampler != null) {
+            sampler.start(null, runStats);
+        }
+        startAndJoin(threads);
+        if (sampler != null) {
+            sampler.stop();
+        }
+        for (SharedStats s : statsList) {
+            s.finish();
+        }
+        return finishRun(ctx, runStats);
     }
 
-    private static List<Stats> endRun(Context ctx, List<Stats> statsList, List<Thread> threads) throws Exception {
+    private static void startAndJoin(List<Thread> threads) throws InterruptedException {
         for (Thread t : threads) { t.start(); }
         for (Thread t : threads) { t.join(); }
+    }
+
+    private static List<Stats> endRun(Context ctx, List<Stats> statsList, List<Thread> threads, ProfileSampler sampler) throws Exception {
+        runStarted(ctx, statsList);
+        if (sampler != null) {
+            sampler.start(threads, statsList);
+        }
+        startAndJoin(threads);
+        if (sampler != null) {
+            sampler.stop();
+        }
+        return finishRun(ctx, statsList);
+    }
+
+    private static List<Stats> finishRun(Context ctx, List<Stats> statsList) throws IOException {
         for (Stats s : statsList) {
             ctx.app.track(s, true);
             s.shutdown();
@@ -705,6 +1408,17 @@ public class JsMulti {
                 }
             }
         }
+        ctx.app.runFinished(statsList);
+        if (ctx.metricsPort > 0) {
+            MetricsServer.getInstance(ctx.metricsPort).runFinished(statsList);
+        }
         return statsList;
     }
+
+    private static void runStarted(Context ctx, List<Stats> statsList) throws IOException {
+        ctx.app.runStarted(statsList);
+        if (ctx.metricsPort > 0) {
+            MetricsServer.getInstance(ctx.metricsPort).runStarted(ctx.id, ctx.action.getLabel(), statsList);
+        }
+    }
 }
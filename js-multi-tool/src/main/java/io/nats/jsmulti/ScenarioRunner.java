@@ -0,0 +1,96 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti;
+
+import io.nats.client.Connection;
+import io.nats.jsmulti.settings.Context;
+import io.nats.jsmulti.settings.Scenario;
+import io.nats.jsmulti.shared.Stats;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the phases of a {@link Scenario} back to back on the same connections.
+ * Each phase has its own Stats, warmup phases are run but not kept.
+ * Usage: ScenarioRunner scenario-json-file-spec
+ * Gradle: gradle scenario --args="scenario-json-file-spec"
+ */
+public class ScenarioRunner {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: ScenarioRunner scenario-json-file-spec");
+            System.exit(-1);
+        }
+        run(Scenario.load(args[0]), true);
+    }
+
+    /**
+     * Run the scenario
+     * @param scenario the scenario
+     * @param reportWhenDone whether to print a report for each phase after it runs
+     * @return the stats for each phase that was not excluded, by phase name, in phase order
+     * @throws Exception any exception
+     */
+    public static Map<String, List<Stats>> run(Scenario scenario, boolean reportWhenDone) throws Exception {
+        List<Scenario.Phase> phases = scenario.getPhases();
+        List<Context> contexts = new ArrayList<>();
+        for (Scenario.Phase phase : phases) {
+            contexts.add(scenario.getContext(phase));
+        }
+
+        // enough connections for the phase that needs the most
+        Context first = contexts.get(0);
+        int connectionCount = 1;
+        for (Context ctx : contexts) {
+            connectionCount = Math.max(connectionCount, JsMulti.connectionsNeeded(ctx));
+        }
+
+        Map<String, List<Stats>> results = new LinkedHashMap<>();
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int x = 0; x < connectionCount; x++) {
+                connections.add(first.connect());
+            }
+            for (int x = 0; x < phases.size(); x++) {
+                Scenario.Phase phase = phases.get(x);
+                Context ctx = contexts.get(x);
+                ctx.app.report("Phase " + (x + 1) + " of " + phases.size() + ": " + phase);
+                List<Stats> statsList = JsMulti.run(ctx, JsMulti.connectionsFor(ctx, connections), false, false);
+                if (phase.isExcluded()) {
+                    ctx.app.report("Phase " + phase.name + " is excluded from stats.");
+                }
+                else {
+                    results.put(phase.name, statsList);
+                }
+            }
+        }
+        finally {
+            for (Connection nc : connections) {
+                nc.close();
+            }
+        }
+
+        if (reportWhenDone) {
+            for (Map.Entry<String, List<Stats>> entry : results.entrySet()) {
+                System.out.println("\nPhase: " + entry.getKey());
+                Stats.report(entry.getValue());
+            }
+        }
+        return results;
+    }
+}
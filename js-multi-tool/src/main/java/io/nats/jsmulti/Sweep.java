@@ -0,0 +1,457 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti;
+
+import io.nats.client.Connection;
+import io.nats.client.JetStreamApiException;
+import io.nats.client.KeyValueOptions;
+import io.nats.client.ObjectStoreOptions;
+import io.nats.client.api.StreamConfiguration;
+import io.nats.jsmulti.examples.StreamUtils;
+import io.nats.jsmulti.settings.Context;
+import io.nats.jsmulti.settings.StreamOptions;
+import io.nats.jsmulti.shared.OptionsFactory;
+import io.nats.jsmulti.shared.Stats;
+import io.nats.jsmulti.shared.TerminalException;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs JsMulti for every combination of the swept option values, the cartesian product,
+ * optionally repeated, and reports throughput and percentiles for each combination (cell)
+ * as one matrix on the console and optionally as csv.
+ * Every cell gets new consumers, the durables a run makes are deleted after the run.
+ * With -recreate the stream (-t) or the key value or object store bucket is also deleted
+ * and made again before every run, so every cell starts empty.
+ * Usage: Sweep -sweep option=value,value... [-sweep ...] [-reps count] [-recreate] [-csv file-spec] jsmulti-args
+ * Gradle: gradle sweep --args="-sweep ps=128,1024 -sweep d=1,2,4 -reps 3 -a PubAsync -u sub -m 100k"
+ */
+public class Sweep {
+
+    // the percentiles shown on the console, the csv has all of them
+    public static final String[] CONSOLE_PERCENTILES = new String[] {" p50 ms", " p99 ms"};
+
+    /**
+     * An option and the values to run it with
+     */
+    public static class Dimension {
+        public final String option;
+        public final List<String> values;
+
+        public Dimension(String option, List<String> values) {
+            this.option = option.startsWith("-") ? option.substring(1) : option;
+            this.values = Collections.unmodifiableList(new ArrayList<>(values));
+        }
+
+        /**
+         * Parse a dimension
+         * @param spec the option and its values, i.e. bs=10,100,500
+         * @return the dimension
+         */
+        public static Dimension parse(String spec) {
+            int eq = spec.indexOf('=');
+            if (eq < 1 || eq == spec.length() - 1) {
+                throw new IllegalArgumentException("Sweep must be option=value,value... [" + spec + "]");
+            }
+            List<String> values = new ArrayList<>();
+            for (String v : spec.substring(eq + 1).split(",")) {
+                if (!v.trim().isEmpty()) {
+                    values.add(v.trim());
+                }
+            }
+            return new Dimension(spec.substring(0, eq).trim(), values);
+        }
+
+        @Override
+        public String toString() {
+            return option + "=" + String.join(",", values);
+        }
+    }
+
+    /**
+     * One combination of the swept values and the stats of each of its runs
+     */
+    public static class Cell {
+        public final Map<String, String> values;
+        public final List<List<Stats>> runs = new ArrayList<>();
+
+        Cell(Map<String, String> values) {
+            this.values = Collections.unmodifiableMap(values);
+        }
+
+        /**
+         * The mean of each metric over the runs, only the metrics every run has
+         * @return the metric values by name, in order
+         */
+        public Map<String, Double> getMetrics() {
+            Map<String, Double> means = new LinkedHashMap<>();
+            if (runs.isEmpty()) {
+                return means;
+            }
+            List<Map<String, Double>> list = new ArrayList<>();
+            for (List<Stats> run : runs) {
+                list.add(Compare.runMetrics(run));
+            }
+            for (String metric : list.get(0).keySet()) {
+                double sum = 0;
+                boolean all = true;
+                for (Map<String, Double> m : list) {
+                    Double d = m.get(metric);
+                    if (d == null) {
+                        all = false;
+                        break;
+                    }
+                    sum += d;
+                }
+                if (all) {
+                    means.put(metric, sum / list.size());
+                }
+            }
+            return means;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> e : values.entrySet()) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append('-').append(e.getKey()).append(' ').append(e.getValue());
+            }
+            return sb.toString();
+        }
+    }
+
+    private final String[] args;
+    private final List<Dimension> dimensions;
+    private final int repetitions;
+    private final boolean recreate;
+
+    public static void main(String[] args) throws Exception {
+        List<Dimension> dimensions = new ArrayList<>();
+        int repetitions = 1;
+        boolean recreate = false;
+        String csv = null;
+        List<String> jsMultiArgs = new ArrayList<>();
+        try {
+            for (int x = 0; x < args.length; x++) {
+                switch (args[x]) {
+                    case "-sweep":
+                        dimensions.add(Dimension.parse(args[++x]));
+                        break;
+                    case "-reps":
+                        repetitions = Integer.parseInt(args[++x]);
+                        break;
+                    case "-recreate":
+                        recreate = true;
+                        break;
+                    case "-csv":
+                        csv = args[++x];
+                        break;
+                    default:
+                        jsMultiArgs.add(args[x]);
+                }
+            }
+        }
+        catch (Exception e) {
+            dimensions.clear();
+        }
+        if (dimensions.isEmpty() || repetitions < 1) {
+            System.err.println("Usage: Sweep -sweep option=value,value... [-sweep ...] [-reps count] [-recreate] [-csv file-spec] jsmulti-args");
+            System.err.println("    values are separated by commas, so write numbers as 10_000 or 10k, not 10,000");
+            System.exit(-1);
+        }
+
+        Sweep sweep = new Sweep(jsMultiArgs.toArray(new String[0]), dimensions, repetitions, recreate);
+        List<Cell> cells = sweep.run();
+        report(dimensions, cells, System.out);
+        if (csv != null) {
+            writeCsv(csv, dimensions, cells);
+            System.out.println("Matrix written to " + csv);
+        }
+    }
+
+    /**
+     * Construct a sweep
+     * @param args the JsMulti arguments every cell starts with, the swept values come after them so they win
+     * @param dimensions the options to sweep and their values
+     * @param repetitions how many times to run each cell
+     * @param recreate whether to recreate the stream or bucket before every run
+     */
+    public Sweep(String[] args, List<Dimension> dimensions, int repetitions, boolean recreate) {
+        this.args = args;
+        this.dimensions = Collections.unmodifiableList(new ArrayList<>(dimensions));
+        this.repetitions = repetitions;
+        this.recreate = recreate;
+    }
+
+    /**
+     * The cells, every combination of the dimension values, the last dimension changing fastest
+     * @return the cells, without runs
+     */
+    public List<Cell> cells() {
+        List<Map<String, String>> combos = new ArrayList<>();
+        combos.add(new LinkedHashMap<>());
+        for (Dimension d : dimensions) {
+            List<Map<String, String>> next = new ArrayList<>();
+            for (Map<String, String> combo : combos) {
+                for (String value : d.values) {
+                    Map<String, String> m = new LinkedHashMap<>(combo);
+                    m.put(d.option, value);
+                    next.add(m);
+                }
+            }
+            combos = next;
+        }
+        List<Cell> cells = new ArrayList<>();
+        for (Map<String, String> combo : combos) {
+            cells.add(new Cell(combo));
+        }
+        return cells;
+    }
+
+    /**
+     * The JsMulti arguments for a cell
+     * @param cell the cell
+     * @return the arguments
+     */
+    public String[] getArgs(Cell cell) {
+        List<String> list = new ArrayList<>(Arrays.asList(args));
+        for (Map.Entry<String, String> e : cell.values.entrySet()) {
+            list.add("-" + e.getKey());
+            list.add(e.getValue());
+        }
+        return list.toArray(new String[0]);
+    }
+
+    /**
+     * Run every cell, repetitions of a cell back to back
+     * @return the cells with their runs
+     * @throws Exception any exception
+     */
+    public List<Cell> run() throws Exception {
+        List<Cell> cells = cells();
+        // every cell's arguments are checked before anything runs
+        for (Cell cell : cells) {
+            new Context(getArgs(cell));
+        }
+        for (int c = 0; c < cells.size(); c++) {
+            Cell cell = cells.get(c);
+            for (int r = 1; r <= repetitions; r++) {
+                Context ctx = new Context(getArgs(cell));
+                ctx.app.report("Cell " + (c + 1) + " of " + cells.size() + ", run " + r + " of " + repetitions + ": " + cell);
+                if (recreate) {
+                    recreate(ctx);
+                }
+                cell.runs.add(JsMulti.run(ctx, false, false));
+            }
+        }
+        return cells;
+    }
+
+    private static void recreate(Context ctx) throws Exception {
+        try (Connection nc = ctx.connect(OptionsFactory.OptionsType.ADMIN)) {
+            if (ctx.action.isKvAction()) {
+                KeyValueOptions kvo = KeyValueOptions.builder().jetStreamOptions(ctx.getJetStreamOptions()).build();
+                try { nc.keyValueManagement(kvo).delete(ctx.kvBucket); } catch (JetStreamApiException ignore) {}
+            }
+            else if (ctx.action.isObjectStoreAction()) {
+                ObjectStoreOptions oso = ObjectStoreOptions.builder().jetStreamOptions(ctx.getJetStreamOptions()).build();
+                try { nc.objectStoreManagement(oso).delete(ctx.osBucket); } catch (JetStreamApiException ignore) {}
+            }
+            else {
+                if (ctx.stream == null) {
+                    throw new TerminalException("Recreating between cells requires the stream (-t)");
+                }
+                // made again with the storage type, max bytes and replicas it already has
+                StreamOptions so = new StreamOptions();
+                try {
+                    StreamConfiguration sc = nc.jetStreamManagement(ctx.getJetStreamOptions()).getStreamInfo(ctx.stream).getConfiguration();
+                    so.storageType(sc.getStorageType()).maxBytes(sc.getMaxBytes()).replicas(sc.getReplicas());
+                }
+                catch (JetStreamApiException ignore) {
+                    // not there yet, made with the defaults
+                }
+                StreamUtils.setupStream(ctx.stream, ctx.subject, so, ctx.getOptions(OptionsFactory.OptionsType.ADMIN), ctx.getJetStreamOptions());
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------
+    // Report
+    // ----------------------------------------------------------------------------------------------------
+    // every metric any cell has, in the order they first appear
+    private static List<String> metricNames(List<Map<String, Double>> metrics) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Map<String, Double> m : metrics) {
+            names.addAll(m.keySet());
+        }
+        return new ArrayList<>(names);
+    }
+
+    private static List<Map<String, Double>> cellMetrics(List<Cell> cells) {
+        List<Map<String, Double>> metrics = new ArrayList<>();
+        for (Cell cell : cells) {
+            metrics.add(cell.getMetrics());
+        }
+        return metrics;
+    }
+
+    private static boolean onConsole(String metric) {
+        if (!metric.endsWith(" ms")) {
+            return true;
+        }
+        for (String p : CONSOLE_PERCENTILES) {
+            if (metric.endsWith(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Print the matrix, a row for each cell with the mean of its runs
+     * @param dimensions the swept options
+     * @param cells the cells with their runs
+     * @param out the stream to print to
+     */
+    public static void report(List<Dimension> dimensions, List<Cell> cells, PrintStream out) {
+        List<Map<String, Double>> metrics = cellMetrics(cells);
+        List<String> headers = new ArrayList<>();
+        for (Dimension d : dimensions) {
+            headers.add("-" + d.option);
+        }
+        headers.add("runs");
+        for (String metric : metricNames(metrics)) {
+            if (onConsole(metric)) {
+                headers.add(metric);
+            }
+        }
+
+        List<List<String>> rows = new ArrayList<>();
+        for (int x = 0; x < cells.size(); x++) {
+            Cell cell = cells.get(x);
+            List<String> row = new ArrayList<>(cell.values.values());
+            row.add("" + cell.runs.size());
+            for (int h = dimensions.size() + 1; h < headers.size(); h++) {
+                String metric = headers.get(h);
+                Double d = metrics.get(x).get(metric);
+                if (d == null) {
+                    row.add("");
+                }
+                else if (metric.equals("bytes/sec")) {
+                    row.add(Stats.humanBytes(d) + "/sec");
+                }
+                else if (metric.endsWith(" ms")) {
+                    row.add(String.format(Locale.ROOT, "%.3f", d));
+                }
+                else {
+                    row.add(Stats.format3(d));
+                }
+            }
+            rows.add(row);
+        }
+
+        int[] widths = new int[headers.size()];
+        for (int h = 0; h < widths.length; h++) {
+            widths[h] = headers.get(h).length();
+            for (List<String> row : rows) {
+                widths[h] = Math.max(widths[h], row.get(h).length());
+            }
+        }
+        StringBuilder sep = new StringBuilder("|");
+        for (int w : widths) {
+            sep.append(' ').append(repeat('-', w)).append(" |");
+        }
+        out.println("\n" + sep);
+        out.println(line(headers, widths, dimensions.size()));
+        out.println(sep);
+        for (List<String> row : rows) {
+            out.println(line(row, widths, dimensions.size()));
+        }
+        out.println(sep);
+    }
+
+    // the swept values are left aligned, the numbers right aligned
+    private static String line(List<String> values, int[] widths, int leftAligned) {
+        StringBuilder sb = new StringBuilder("|");
+        for (int x = 0; x < values.size(); x++) {
+            String v = values.get(x);
+            String pad = repeat(' ', widths[x] - v.length());
+            sb.append(' ').append(x < leftAligned ? v + pad : pad + v).append(" |");
+        }
+        return sb.toString();
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[Math.max(0, count)];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * Write the matrix as csv, a row for each cell with the mean of its runs, every metric, unformatted
+     * @param fileSpec the file
+     * @param dimensions the swept options
+     * @param cells the cells with their runs
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeCsv(String fileSpec, List<Dimension> dimensions, List<Cell> cells) throws IOException {
+        List<Map<String, Double>> metrics = cellMetrics(cells);
+        List<String> names = metricNames(metrics);
+        try (Writer w = Files.newBufferedWriter(Paths.get(fileSpec), StandardCharsets.UTF_8)) {
+            StringBuilder sb = new StringBuilder();
+            for (Dimension d : dimensions) {
+                sb.append(d.option).append(',');
+            }
+            sb.append("runs");
+            for (String name : names) {
+                sb.append(',').append(name);
+            }
+            w.write(sb.append('\n').toString());
+
+            for (int x = 0; x < cells.size(); x++) {
+                Cell cell = cells.get(x);
+                sb.setLength(0);
+                for (String v : cell.values.values()) {
+                    sb.append(v).append(',');
+                }
+                sb.append(cell.runs.size());
+                for (String name : names) {
+                    Double d = metrics.get(x).get(name);
+                    sb.append(',');
+                    if (d != null) {
+                        sb.append(String.format(Locale.ROOT, "%.3f", d));
+                    }
+                }
+                w.write(sb.append('\n').toString());
+            }
+        }
+    }
+}
@@ -49,7 +49,7 @@ public class Producer {
 //            .latencyFlag(LATENCY_RUN)   // tells the code to add latency info to the header
             .messageCount(1_000_000)    // default is 100_000
             .payloadSize(0)             // default is 128
-            .roundSize(50)              // how often to check Async Publish Acks, default is 100
+            .maxInFlight(50)            // Async Publishes waiting for an ack, default is 100
             .threads(1)                 // default is 1
             .individualConnection()     // versus .sharedConnection()
             // .reportFrequency(500)    // default is 10% of message count
@@ -20,7 +20,7 @@ public enum Action {
     PUB(                 "Pub",                 true,  true,  true,  false, false),
 
     REQUEST(             "Request",             true,  true,  true,  false, false),
-    // REQUEST_ASYNC(       "RequestAsync",        true,  false, true,  false),
+    REQUEST_ASYNC(       "RequestAsync",        true,  false, true,  false, false),
     REPLY(               "Reply",               false, false, true,  true,  false),
 
     SUB_CORE(            "SubCore",             false, false, true,  true,  false),
@@ -36,12 +36,22 @@ public enum Action {
     // simplification
     SUB_FETCH(           "SubFetch",            false, false, false, false, false),
     SUB_ITERATE(         "SubIterate",          false, false, false, false, false),
-    // SUB_CONSUME(         "SubConsume",          false, false, false, false, false),
+    SUB_CONSUME(         "SubConsume",          false, false, false, false, false),
     SUB_FETCH_QUEUE(     "SubFetchQueue",       false, false, false, false, true),
     SUB_ITERATE_QUEUE(   "SubIterateQueue",     false, false, false, false, true),
-    // SUB_CONSUME_QUEUE(   "SubConsumeQueue",     false, false, false, false, true),
+    SUB_CONSUME_QUEUE(   "SubConsumeQueue",     false, false, false, false, true),
 
     RTT(                 "RTT",                 true,  true,  true,  false, false),
+
+    // key value, the bucket operations are pub actions, the watch is a core style sub action
+    KV_PUT(              "KvPut",               true,  true,  true,  false, false),
+    KV_GET(              "KvGet",               true,  true,  true,  false, false),
+    KV_UPDATE_CAS(       "KvUpdateCas",         true,  true,  true,  false, false),
+    KV_WATCH(            "KvWatch",             false, false, true,  false, false),
+
+    // object store, both drive their own operations like a publisher
+    OS_PUT(              "OsPut",               true,  true,  true,  false, false),
+    OS_GET(              "OsGet",               true,  true,  true,  false, false),
     CUSTOM(              "CUSTOM",              false, false, false, false, false);
 
     private final String label;
@@ -109,6 +119,14 @@ public enum Action {
         return queue;
     }
 
+    public boolean isKvAction() {
+        return this == KV_PUT || this == KV_GET || this == KV_UPDATE_CAS || this == KV_WATCH;
+    }
+
+    public boolean isObjectStoreAction() {
+        return this == OS_PUT || this == OS_GET;
+    }
+
     @Override
     public String toString() {
         return label;
@@ -15,8 +15,11 @@ package io.nats.jsmulti.settings;
 
 import io.nats.client.BaseConsumeOptions;
 import io.nats.client.api.AckPolicy;
+import io.nats.client.api.StorageType;
 import io.nats.client.support.JsonParser;
 import io.nats.client.support.JsonValue;
+import io.nats.jsmulti.shared.Payloads;
+import io.nats.jsmulti.shared.SubjectSpace;
 
 import java.io.IOException;
 import java.io.PrintStream;
@@ -48,6 +51,9 @@ public class Arguments {
     public static Arguments pubAsync(String subject) { return instance(PUB_ASYNC, subject); }
     public static Arguments pubCore(String subject) { return instance(PUB_CORE, subject); }
 
+    public static Arguments request(String subject) { return instance(REQUEST, subject); }
+    public static Arguments requestAsync(String subject) { return instance(REQUEST_ASYNC, subject); }
+
     public static Arguments subCore(String subject) { return instance(SUB_CORE, subject); }
     public static Arguments subPush(String subject) { return instance(SUB_PUSH, subject); }
     public static Arguments subQueue(String subject) { return instance(SUB_QUEUE, subject); }
@@ -64,6 +70,16 @@ public class Arguments {
     public static Arguments subIterate(String stream, String subject) { return _consumeInstance(SUB_ITERATE, stream, subject); }
     public static Arguments subFetchQueue(String stream, String subject) { return _consumeInstance(SUB_FETCH_QUEUE, stream, subject); }
     public static Arguments subIterateQueue(String stream, String subject) { return _consumeInstance(SUB_ITERATE_QUEUE, stream, subject); }
+    public static Arguments subConsume(String stream, String subject) { return _consumeInstance(SUB_CONSUME, stream, subject); }
+    public static Arguments subConsumeQueue(String stream, String subject) { return _consumeInstance(SUB_CONSUME_QUEUE, stream, subject); }
+
+    public static Arguments kvPut(String bucket) { return instance(KV_PUT).kvBucket(bucket); }
+    public static Arguments kvGet(String bucket) { return instance(KV_GET).kvBucket(bucket); }
+    public static Arguments kvUpdateCas(String bucket) { return instance(KV_UPDATE_CAS).kvBucket(bucket); }
+    public static Arguments kvWatch(String bucket) { return instance(KV_WATCH).kvBucket(bucket); }
+
+    public static Arguments osPut(String bucket) { return instance(OS_PUT).osBucket(bucket); }
+    public static Arguments osGet(String bucket) { return instance(OS_GET).osBucket(bucket); }
 
     public Arguments addJsonConfigFile(String jsonFileSpec) throws IOException {
         return _addJsonConfig(JsonParser.parse(Files.readAllBytes(Paths.get(jsonFileSpec))));
@@ -73,6 +89,10 @@ public class Arguments {
         return _addJsonConfig(JsonParser.parse(json));
     }
 
+    public Arguments addJsonConfig(JsonValue jv) {
+        return _addJsonConfig(jv);
+    }
+
     private Arguments _addJsonConfig(JsonValue jv) {
         if (jv.map != null) {
             for (Map.Entry<String, JsonValue> entry : jv.map.entrySet()) {
@@ -87,6 +107,11 @@ public class Arguments {
                     case LONG:
                         add(entry.getKey(), value.l.toString());
                         break;
+                    case BOOL:
+                        if (value.bool) {
+                            add(entry.getKey()); // a flag, i.e. "lf": true
+                        }
+                        break;
                 }
             }
         }
@@ -155,10 +180,26 @@ public class Arguments {
         return lf ? add("lf") : this;
     }
 
+    public Arguments latencyHighRes() {
+        return add("lhr");
+    }
+
     public Arguments latencyCsv(String latencyCsvFileSpec) {
         return add("lcsv", latencyCsvFileSpec);
     }
 
+    public Arguments latencyBinary(String latencyBinaryFileSpec) {
+        return add("lbin", latencyBinaryFileSpec);
+    }
+
+    public Arguments latencyBinaryMemoryMapped(String latencyBinaryFileSpec) {
+        return add("lbin", latencyBinaryFileSpec).add("lmap");
+    }
+
+    public Arguments latencyRingSize(int latencyRingSize) {
+        return add("lrs", latencyRingSize);
+    }
+
     public Arguments optionsFactory(String optionsFactoryClassName) {
         return add("of", optionsFactoryClassName);
     }
@@ -171,6 +212,26 @@ public class Arguments {
         return add("rf", -1);
     }
 
+    public Arguments intervalFile(String intervalFileSpec) {
+        return add("ivf", intervalFileSpec);
+    }
+
+    public Arguments intervalMillis(long intervalMillis) {
+        return add("iv", intervalMillis);
+    }
+
+    public Arguments metricsPort(int metricsPort) {
+        return add("mp", metricsPort);
+    }
+
+    public Arguments profile() {
+        return add("prof");
+    }
+
+    public Arguments resultsFile(String resultsFileSpec) {
+        return add("rsf", resultsFileSpec);
+    }
+
     public Arguments subject(String subject) {
         if (subject == null) {
             return this;
@@ -213,10 +274,30 @@ public class Arguments {
         return add("n", shared ? SHARED : INDIVIDUAL);
     }
 
+    public Arguments virtualThreads() {
+        return add("vt");
+    }
+
+    public Arguments virtualThreads(int connections) {
+        return add("vt").add("vc", connections);
+    }
+
     public Arguments jitter(long jitter) {
         return add("j", jitter);
     }
 
+    public Arguments rate(long messagesPerSecond) {
+        return add("rate", messagesPerSecond);
+    }
+
+    public Arguments rampFrom(long messagesPerSecond) {
+        return add("rrf", messagesPerSecond);
+    }
+
+    public Arguments ratePerThread(long messagesPerSecond) {
+        return add("rate", messagesPerSecond).add("rpt");
+    }
+
     public Arguments payloadSize(int payloadSize) {
         return add("ps", payloadSize);
     }
@@ -225,8 +306,42 @@ public class Arguments {
         return add("pv", payloadVariants);
     }
 
+    public Arguments subjectTemplate(String subjectTemplate) {
+        return add("st", subjectTemplate);
+    }
+
+    public Arguments subjectTemplate(String subjectTemplate, int keySpace, SubjectSpace.Distribution keyDistribution) {
+        return add("st", subjectTemplate).add("ks", keySpace).add("kd", keyDistribution.getLabel());
+    }
+
+    public Arguments keySpace(int keySpace) {
+        return add("ks", keySpace);
+    }
+
+    public Arguments keyDistribution(SubjectSpace.Distribution keyDistribution) {
+        return add("kd", keyDistribution.getLabel());
+    }
+
+    public Arguments payloadType(Payloads.Type payloadType) {
+        return add("pt", payloadType.getLabel());
+    }
+
+    public Arguments payloadFile(String payloadFile) {
+        return add("pf", payloadFile);
+    }
+
+    public Arguments maxInFlight(int maxInFlight) {
+        return add("mif", maxInFlight);
+    }
+
+    /**
+     * @deprecated publish async uses an in flight window instead of rounds, use {@link #maxInFlight(int)}
+     * @param roundSize the round size, used as the max in flight
+     * @return the arguments
+     */
+    @Deprecated
     public Arguments roundSize(int roundSize) {
-        return add("rs", roundSize);
+        return maxInFlight(roundSize);
     }
 
     public Arguments ackPolicy(AckPolicy ackPolicy) {
@@ -249,10 +364,58 @@ public class Arguments {
         return add("kf", ackAllFrequency);
     }
 
+    public Arguments ackAsync() {
+        return add("ka");
+    }
+
+    public Arguments ackBatch(int ackBatch) {
+        return add("kb", ackBatch);
+    }
+
+    public Arguments ackFlushMillis(long ackFlushMillis) {
+        return add("kms", ackFlushMillis);
+    }
+
     public Arguments batchSize(int batchSize) {
         return add("bs", batchSize);
     }
 
+    public Arguments batchBytes(long batchBytes) {
+        return add("bb", batchBytes);
+    }
+
+    public Arguments thresholdPercent(int thresholdPercent) {
+        return add("tp", thresholdPercent);
+    }
+
+    public Arguments kvBucket(String bucket) {
+        return add("kvb", bucket);
+    }
+
+    public Arguments kvHistory(int history) {
+        return add("kvh", history);
+    }
+
+    public Arguments kvReadPercent(int readPercent) {
+        return add("kvrp", readPercent);
+    }
+
+    public Arguments osBucket(String bucket) {
+        return add("osb", bucket);
+    }
+
+    public Arguments osObjectSize(long objectSize) {
+        return add("oss", objectSize);
+    }
+
+    public Arguments osChunkSize(int chunkSize) {
+        return add("osc", chunkSize);
+    }
+
+    public Arguments osStorageType(StorageType storageType) {
+        return add("osst", storageType);
+    }
+
     public Arguments requestWaitMillis(long requestWaitMillis) {
         return add("rqwms", requestWaitMillis);
     }
@@ -13,21 +13,32 @@
 
 package io.nats.jsmulti.settings;
 
+import io.nats.client.BaseConsumeOptions;
 import io.nats.client.Connection;
 import io.nats.client.JetStreamOptions;
 import io.nats.client.Nats;
 import io.nats.client.Options;
 import io.nats.client.api.AckPolicy;
+import io.nats.client.api.StorageType;
 import io.nats.jsmulti.shared.ActionRunner;
 import io.nats.jsmulti.shared.Application;
+import io.nats.jsmulti.shared.ClockOffset;
+import io.nats.jsmulti.shared.IntervalApplication;
+import io.nats.jsmulti.shared.IntervalRecorder;
+import io.nats.jsmulti.shared.LatencyRing;
 import io.nats.jsmulti.shared.OptionsFactory;
+import io.nats.jsmulti.shared.Pacer;
+import io.nats.jsmulti.shared.Payloads;
+import io.nats.jsmulti.shared.SubjectSpace;
 import io.nats.jsmulti.shared.Utils;
+import io.nats.jsmulti.shared.VirtualThreads;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static io.nats.jsmulti.settings.Arguments.INDIVIDUAL;
@@ -40,6 +51,23 @@ public class Context {
     public static final long DEFAULT_REQUEST_WAIT_MS = 1000;
     public static final long DEFAULT_MAX_WAIT_MS = 10000;
     public static final int MIN_WAIT_MS = 100;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 100;
+    public static final int MAX_IN_FLIGHT = 100_000;
+    public static final int MAX_THREADS = 20;
+    public static final int DEFAULT_KEY_SPACE = 1000;
+    public static final int MAX_KEY_SPACE = 10_000_000;
+    public static final int MAX_VT_THREADS = 100_000;
+    public static final int MAX_VT_CONNECTIONS = 1000;
+    public static final String DEFAULT_KV_BUCKET = "jsmulti";
+    public static final int MAX_KV_HISTORY = 64;
+    public static final String DEFAULT_OS_BUCKET = "jsmulti";
+    public static final long DEFAULT_OS_OBJECT_SIZE = 1024 * 1024;
+    public static final int DEFAULT_OS_CHUNK_SIZE = 128 * 1024;
+    public static final int DEFAULT_OS_MESSAGE_COUNT = 100;
+    public static final int DEFAULT_ACK_BATCH = 100;
+    public static final int MAX_ACK_BATCH = 10_000;
+    public static final long DEFAULT_ACK_FLUSH_MS = 10;
+    public static final long MAX_ACK_FLUSH_MS = 1000;
 
     // ----------------------------------------------------------------------------------------------------
     // Settings
@@ -50,7 +78,11 @@ public class Context {
 
     // latency
     public final boolean latencyFlag;
+    public final boolean latencyHighRes;
     public final String lcsv;
+    public final String lbin;
+    public final boolean lmap;
+    public final int latencyRingSize;
 
     // connection options
     public final String credsFile;
@@ -60,17 +92,44 @@ public class Context {
     // general
     public final String stream;
     public final String subject;
+    public final String subjectTemplate;
+    public final int keySpace;
+    public final SubjectSpace.Distribution keyDistribution;
     public final long messageCount;
     public final int threads;
     public final boolean connShared;
+    public final boolean virtualThreads;
+    public final int vtConnections;
     public final long jitter;
+    public final long rate;
+    public final boolean ratePerThread;
+    public final long rampFrom;
     public final int payloadSize;
     public final int payloadVariants;
-    public final int roundSize;
+    public final Payloads.Type payloadType;
+    public final String payloadFile;
+    public final int maxInFlight;
     public final AckPolicy ackPolicy;
     public final int ackAllFrequency;
+    public final boolean ackAsync;
+    public final int ackBatch;
+    public final long ackFlushMillis;
     public final int batchSize;
+    public final long batchBytes;
+    public final int thresholdPercent;
+    public final String kvBucket;
+    public final int kvHistory;
+    public final int kvReadPercent;
+    public final String osBucket;
+    public final long osObjectSize;
+    public final int osChunkSize;
+    public final StorageType osStorageType;
     public final long reportFrequency;
+    public final String intervalFile;
+    public final long intervalMillis;
+    public final int metricsPort;
+    public final boolean profile;
+    public final String resultsFile;
 
     public final Duration requestWaitDuration;
     public final Duration readTimeoutDuration;
@@ -100,10 +159,15 @@ public class Context {
     private final String[] servers;
     private final OptionsFactory optionsFactory;
     private final long[] perThread;
-    private final List<byte[]> payloads; // private and with getter in case I want to do more with payload later
-    private final Map<String, AtomicLong> subscribeCounters = Collections.synchronizedMap(new HashMap<>());
+    private final SubjectSpace subjectSpace;
+    private final Payloads payloads; // private and with getter in case I want to do more with payload later
+    private final ThreadLocal<Payloads.Cursor> payloadCursors;
+    private final Map<String, LongAdder> subscribeCounters = Collections.synchronizedMap(new HashMap<>());
     private final String subNameWhenQueue;
     private int lastServerIndex;
+    private final Pacer globalPacer;
+    private final AtomicInteger latencyFileCounter = new AtomicInteger();
+    private volatile ClockOffset clockOffset = ClockOffset.NONE;
 
     public Options getOptions() throws Exception {
         return optionsFactory.getOptions(this, OptionsFactory.OptionsType.DEFAULT);
@@ -133,21 +197,37 @@ public class Context {
         return nc;
     }
 
-    final ReentrantLock gplock = new ReentrantLock();
+    /**
+     * The keyed subjects when there is a subject template
+     * @return the subject space or null if there is no template
+     */
+    public SubjectSpace getSubjectSpace() {
+        return subjectSpace;
+    }
+
+    /**
+     * A chooser for one publishing thread
+     * @return the chooser or null if there is no subject template, publish to the subject
+     */
+    public SubjectSpace.Chooser getSubjectChooser() {
+        return subjectSpace == null ? null : subjectSpace.chooser();
+    }
+
+    /**
+     * The next payload for the calling thread. Runners that publish in a loop
+     * should take their own cursor with {@link #getPayloadCursor()} instead.
+     * @return the payload
+     */
     public byte[] getPayload() {
-        if (payloadVariants == 1) {
-            return payloads.get(0);
-        }
+        return payloadCursors.get().next();
+    }
 
-        gplock.lock();
-        try {
-            byte[] payload = payloads.remove(0);
-            payloads.add(payload);
-            return payload;
-        }
-        finally {
-            gplock.unlock();
-        }
+    /**
+     * A cursor over the payloads for one thread to rotate through the variants without locking
+     * @return the cursor
+     */
+    public Payloads.Cursor getPayloadCursor() {
+        return payloads.cursor();
     }
 
     public String getFirstServer() {
@@ -184,12 +264,83 @@ public class Context {
         return sd;
     }
 
+    /**
+     * The pacer for a publishing thread when running at a fixed rate
+     * @return the shared pacer for a global rate, a new pacer for a per thread rate or null if there is no rate
+     */
+    public Pacer getPacer() {
+        if (rate < 1) {
+            return null;
+        }
+        return ratePerThread ? newPacer(messageCount / threads) : globalPacer;
+    }
+
+    /**
+     * Whether subscribers hand their acks to an ack sender instead of acking inline
+     * @return true when acking asynchronously for a subscribe action that acks
+     */
+    public boolean isAckAsync() {
+        return ackAsync && action.isSubAction() && !action.isRegularCore() && ackPolicy != AckPolicy.None;
+    }
+
+    /**
+     * The offset from this process's clock to the server clock, for high resolution latency
+     * @return the offset, not estimated unless running with -lhr
+     */
+    public ClockOffset getClockOffset() {
+        return clockOffset;
+    }
+
+    public void setClockOffset(ClockOffset clockOffset) {
+        this.clockOffset = clockOffset;
+    }
+
+    /**
+     * The current time for latency, on the server clock in epoch nanos when high resolution, otherwise epoch millis
+     * @return the time
+     */
+    public long latencyTime() {
+        return latencyHighRes ? clockOffset.toServer(epochNanos()) : System.currentTimeMillis();
+    }
+
+    private Pacer newPacer(long messages) {
+        return rampFrom > 0 ? new Pacer(rampFrom, rate, Math.max(1, messages)) : new Pacer(rate);
+    }
+
     public long getPubCount(int id) {
         return perThread[id-1]; // ids start at 1
     }
 
-    public AtomicLong getSubscribeCounter(String key) {
-        return subscribeCounters.computeIfAbsent(key, k -> new AtomicLong());
+    /**
+     * The progress counter shared by the subscribers with the same durable or queue.
+     * Every subscriber adds to it for each message and reads it to know when to stop,
+     * so it is striped to keep queue subscribers from contending on a single value.
+     * @param key the durable or subscription name
+     * @return the counter
+     */
+    public LongAdder getSubscribeCounter(String key) {
+        return subscribeCounters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    /**
+     * Each run writes its own latency file, the context id goes before the extension,
+     * i.e. latency.csv becomes latency-&lt;id&gt;.csv, so scenario phases and sweep cells don't overwrite each other.
+     * When more than one thread records latency, each gets its own file,
+     * numbered in the order they start recording, i.e. latency-&lt;id&gt;-1.csv, latency-&lt;id&gt;-2.csv...
+     * @param fileSpec the file spec from the arguments
+     * @return the file spec to use
+     */
+    public String getLatencyFileSpec(String fileSpec) {
+        String suffix = "-" + id;
+        if (threads > 1) {
+            suffix += "-" + latencyFileCounter.incrementAndGet();
+        }
+        int dot = fileSpec.lastIndexOf('.');
+        int sep = Math.max(fileSpec.lastIndexOf('/'), fileSpec.lastIndexOf('\\'));
+        if (dot <= sep) {
+            return fileSpec + suffix;
+        }
+        return fileSpec.substring(0, dot) + suffix + fileSpec.substring(dot);
     }
 
     public String getLabel(int id) {
@@ -215,30 +366,61 @@ public class Context {
     public String toString() {
         StringBuilder sb = new StringBuilder("JetStream Multi-Tool Run Config:");
         append(sb, "action", "a", action, true);
-        append(sb, "latency flag", "lf", "Yes", latencyFlag);
+        append(sb, "latency flag", "lf", "Yes", latencyFlag && !latencyHighRes);
+        append(sb, "latency high resolution", "lhr", "Yes, corrected to the server clock", latencyHighRes);
+        append(sb, "latency csv file", "lcsv", lcsv, lcsv != null && lbin == null);
+        append(sb, "latency binary file", "lbin", lbin + (lmap ? " (memory mapped)" : ""), lbin != null);
+        append(sb, "latency ring size", "lrs", latencyRingSize, latencyRingSize != LatencyRing.DEFAULT_CAPACITY);
         append(sb, "options factory", "of", optionsFactory.getClass().getTypeName(), true);
         append(sb, "report frequency", "rf", reportFrequency < 1 ? "no reporting" : "" + reportFrequency, true);
+        append(sb, "interval file", "ivf", intervalFile, intervalFile != null);
+        append(sb, "interval millis", "iv", intervalMillis, intervalFile != null);
+        append(sb, "metrics port", "mp", metricsPort, metricsPort > 0);
+        append(sb, "profile", "prof", "Yes", profile);
+        append(sb, "results file", "rsf", resultsFile, resultsFile != null);
 
         append(sb, "request wait millis", "rqwms", requestWaitDuration, requestWaitDuration.toMillis() != DEFAULT_REQUEST_WAIT_MS);
         append(sb, "read timeout millis", "rtoms", readTimeoutDuration, readTimeoutDuration.toMillis() != DEFAULT_READ_TIMEOUT_MS);
         append(sb, "read max wait millis", "rmxwms", readMaxWaitDuration, readMaxWaitDuration.toMillis() != DEFAULT_MAX_WAIT_MS);
 
-        append(sb, "subject", "u", subject, true);
+        append(sb, "subject", "u", subject, !action.isKvAction() && !action.isObjectStoreAction());
+        append(sb, "subject template", "st", subjectTemplate, subjectTemplate != null && !action.isKvAction() && !action.isObjectStoreAction());
+        append(sb, "kv bucket", "kvb", kvBucket, action.isKvAction());
+        append(sb, "key template", "st", subjectTemplate, (action.isKvAction() && action != Action.KV_WATCH) || action.isObjectStoreAction());
+        append(sb, "kv history", "kvh", kvHistory, action.isKvAction());
+        append(sb, "kv read percent", "kvrp", kvReadPercent, action.isKvAction() && action != Action.KV_WATCH);
+        append(sb, "os bucket", "osb", osBucket, action.isObjectStoreAction());
+        append(sb, "os object size", "oss", osObjectSize + " bytes", action == Action.OS_PUT);
+        append(sb, "os chunk size", "osc", osChunkSize + " bytes", action == Action.OS_PUT);
+        append(sb, "os storage type", "osst", osStorageType, action.isObjectStoreAction());
+        append(sb, "key space", "ks", keySpace, subjectTemplate != null && action != Action.KV_WATCH);
+        append(sb, "key distribution", "kd", keyDistribution, subjectTemplate != null && action.isPubAction());
         append(sb, "message count", "m", messageCount, true);
         append(sb, "threads", "d", threads, true);
-        append(sb, "connection strategy", "n", connShared ? SHARED : INDIVIDUAL, threads > 1);
+        append(sb, "connection strategy", "n", connShared ? SHARED : INDIVIDUAL, threads > 1 && !virtualThreads);
+        append(sb, "virtual threads", "vt", VirtualThreads.isAvailable() ? "Yes" : "Not available, using platform threads", virtualThreads);
+        append(sb, "connections", "vc", vtConnections, virtualThreads);
 
-        append(sb, "payload size", "p", payloadSize + " bytes", action.isPubAction());
-        append(sb, "payload variants", "p", payloadVariants, payloadVariants > 1 && action.isPubAction());
+        append(sb, "payload size", "p", payloadSize + " bytes", action.isPubAction() && !action.isObjectStoreAction());
+        append(sb, "payload variants", "pv", payloadVariants, payloadVariants > 1 && action.isPubAction());
+        append(sb, "payload type", "pt", payloadType, payloadType != Payloads.Type.ZEROS && payloadType != Payloads.Type.FILE && action.isPubAction());
+        append(sb, "payload file", "pf", payloadFile, payloadType == Payloads.Type.FILE && action.isPubAction());
 
-        append(sb, "jitter", "j", jitter, action.isPubAction());
+        append(sb, "jitter", "j", jitter, action.isPubAction() && rate < 1);
+        append(sb, "rate", "rate", rate + " msgs/sec" + (ratePerThread ? " per thread" : " total"), action.isPubAction() && rate > 0);
+        append(sb, "ramp from rate", "rrf", rampFrom + " msgs/sec", action.isPubAction() && rate > 0 && rampFrom > 0);
 
-        append(sb, "round size", "r", roundSize, action.isPubAsync());
+        append(sb, "max in flight", "mif", maxInFlight, action.isPubAsync());
 
-        append(sb, "ack policy", "kp", ackPolicy, action.isSubAction());
-        append(sb, "ack all frequency", "kf", ackAllFrequency, action.isPush() && ackPolicy == AckPolicy.All);
+        append(sb, "ack policy", "kp", ackPolicy, action.isSubAction() && !action.isKvAction());
+        append(sb, "ack all frequency", "kf", ackAllFrequency, action.isPush() && ackPolicy == AckPolicy.All && !ackAsync);
+        append(sb, "ack async", "ka", "Yes", isAckAsync());
+        append(sb, "ack batch", "kb", ackBatch, isAckAsync());
+        append(sb, "ack flush millis", "kms", ackFlushMillis, isAckAsync());
 
-        append(sb, "batch size", "b", batchSize, action.isPull());
+        append(sb, "batch size", "bs", batchSize, action.isPull());
+        append(sb, "batch bytes", "bb", batchBytes, action.isPull() && batchBytes > 0);
+        append(sb, "threshold percent", "tp", thresholdPercent, action == Action.SUB_CONSUME || action == Action.SUB_CONSUME_QUEUE || action == Action.SUB_ITERATE || action == Action.SUB_ITERATE_QUEUE);
 
         return sb.toString();
     }
@@ -257,25 +439,58 @@ public class Context {
         String _customActionClassName = null;
         String _customAppClassName = null;
         boolean _latencyFlag = false;
+        boolean _latencyHighRes = false;
         String[] _servers = new String[]{Options.DEFAULT_URL};
         String _credsFile = null;
         long _connectionTimeoutMillis = 5000;
         long _reconnectWaitMillis = 1000;
         String _optionsFactoryClassName = null;
         Integer _reportFrequency = null;
+        String _intervalFile = null;
+        long _intervalMillis = IntervalRecorder.DEFAULT_INTERVAL_MILLIS;
+        int _metricsPort = 0;
+        boolean _profile = false;
+        String _resultsFile = null;
         String _stream = null;
         String _subject = "sub" + randomString();
+        String _subjectTemplate = null;
+        int _keySpace = DEFAULT_KEY_SPACE;
+        SubjectSpace.Distribution _keyDistribution = SubjectSpace.Distribution.UNIFORM;
         int _messageCount = 100_000;
         int _threads = 1;
         boolean _connShared = true;
+        boolean _virtualThreads = false;
+        int _vtConnections = 1;
         long _jitter = 0;
+        long _rate = 0;
+        boolean _ratePerThread = false;
+        long _rampFrom = 0;
         int _payloadSize = 128;
         int _payloadVariants = 1;
-        int _roundSize = MIN_WAIT_MS;
+        Payloads.Type _payloadType = Payloads.Type.ZEROS;
+        String _payloadFile = null;
+        int _maxInFlight = DEFAULT_MAX_IN_FLIGHT;
         AckPolicy _ackPolicy = AckPolicy.Explicit;
         int _ackAllFrequency = 1;
+        boolean _ackAsync = false;
+        int _ackBatch = DEFAULT_ACK_BATCH;
+        long _ackFlushMillis = DEFAULT_ACK_FLUSH_MS;
         int _batchSize = 10;
+        long _batchBytes = 0;
+        int _thresholdPercent = BaseConsumeOptions.DEFAULT_THRESHOLD_PERCENT;
+        String _kvBucket = DEFAULT_KV_BUCKET;
+        int _kvHistory = 1;
+        Integer _kvReadPercent = null;
+        String _osBucket = DEFAULT_OS_BUCKET;
+        long _osObjectSize = DEFAULT_OS_OBJECT_SIZE;
+        int _osChunkSize = DEFAULT_OS_CHUNK_SIZE;
+        StorageType _osStorageType = StorageType.File;
+        boolean _messageCountSet = false;
+        boolean _keySpaceSet = false;
         String _lcsv = null;
+        String _lbin = null;
+        boolean _lmap = false;
+        int _latencyRingSize = LatencyRing.DEFAULT_CAPACITY;
         String _queueName = "qn" + randomString();
         String _subDurableWhenQueue = "qd" + randomString();
         long _requestWaitMillis = DEFAULT_REQUEST_WAIT_MS;
@@ -295,6 +510,18 @@ public class Context {
                         case "-latency_csv_file_spec":
                             _lcsv = asString(args[++x]);
                             break;
+                        case "-lbin":
+                        case "-latency_binary_file_spec":
+                            _lbin = asString(args[++x]);
+                            break;
+                        case "-lmap":
+                        case "-latency_memory_mapped":
+                            _lmap = true;
+                            break;
+                        case "-lrs":
+                        case "-latency_ring_size":
+                            _latencyRingSize = asInt("latency ring size", args[++x], 16 * 1024 * 1024);
+                            break;
                         case "-of":
                         case "-options_factory_class_name":
                             _optionsFactoryClassName = asString(args[++x]);
@@ -318,6 +545,11 @@ public class Context {
                         case "-latency_flag":
                             _latencyFlag = true;
                             break;
+                        case "-lhr":
+                        case "-latency_high_resolution":
+                            _latencyFlag = true;
+                            _latencyHighRes = true;
+                            break;
                         case "-t":
                         case "-stream":
                             _stream = asString(args[++x]);
@@ -326,9 +558,26 @@ public class Context {
                         case "-subject":
                             _subject = asString(args[++x]);
                             break;
+                        case "-st":
+                        case "-subject_template":
+                            _subjectTemplate = asString(args[++x]);
+                            break;
+                        case "-ks":
+                        case "-key_space":
+                            _keySpace = asInt("key space", args[++x], 1, MAX_KEY_SPACE);
+                            _keySpaceSet = true;
+                            break;
+                        case "-kd":
+                        case "-key_distribution":
+                            _keyDistribution = SubjectSpace.Distribution.getInstance(asString(args[++x]));
+                            if (_keyDistribution == null) {
+                                error("Invalid Key Distribution, must be one of [uniform, zipfian, hotspot]");
+                            }
+                            break;
                         case "-m":
                         case "-message_count":
                             _messageCount = asInt("total messages", args[++x], -1);
+                            _messageCountSet = true;
                             break;
                         case "-ps":
                         case "-payload_size":
@@ -338,22 +587,95 @@ public class Context {
                         case "-payload_variants":
                             _payloadVariants = asInt("payload variants", args[++x], 100); // 67108864
                             break;
+                        case "-pt":
+                        case "-payload_type":
+                            _payloadType = Payloads.Type.getInstance(asString(args[++x]));
+                            if (_payloadType == null || _payloadType == Payloads.Type.FILE) {
+                                error("Invalid Payload Type, must be one of [zeros, random, text, json]");
+                            }
+                            break;
+                        case "-pf":
+                        case "-payload_file":
+                            _payloadFile = asString(args[++x]);
+                            _payloadType = Payloads.Type.FILE;
+                            break;
                         case "-bs":
                         case "-batch_size":
-                            _batchSize = asInt("batch size", args[++x], 200);
+                            _batchSize = asInt("batch size", args[++x], BaseConsumeOptions.DEFAULT_MESSAGE_COUNT);
+                            break;
+                        case "-bb":
+                        case "-batch_bytes":
+                            _batchBytes = asLong("batch bytes", args[++x], 0, Integer.MAX_VALUE);
+                            break;
+                        case "-tp":
+                        case "-threshold_percent":
+                            _thresholdPercent = asInt("threshold percent", args[++x], 1, 100);
+                            break;
+                        case "-kvb":
+                        case "-kv_bucket":
+                            _kvBucket = asString(args[++x]);
+                            break;
+                        case "-kvh":
+                        case "-kv_history":
+                            _kvHistory = asInt("kv history", args[++x], 1, MAX_KV_HISTORY);
                             break;
-                        case "-rs":
+                        case "-kvrp":
+                        case "-kv_read_percent":
+                            _kvReadPercent = asInt("kv read percent", args[++x], 0, 100);
+                            break;
+                        case "-osb":
+                        case "-os_bucket":
+                            _osBucket = asString(args[++x]);
+                            break;
+                        case "-oss":
+                        case "-os_object_size":
+                            _osObjectSize = asLong("os object size", args[++x], 1, Long.MAX_VALUE);
+                            break;
+                        case "-osc":
+                        case "-os_chunk_size":
+                            _osChunkSize = asInt("os chunk size", args[++x], 1, 64 * 1024 * 1024);
+                            break;
+                        case "-osst":
+                        case "-os_storage_type":
+                            _osStorageType = StorageType.get(asString(args[++x]).toLowerCase());
+                            if (_osStorageType == null) {
+                                error("Invalid Storage Type, must be one of [file, memory]");
+                            }
+                            break;
+                        case "-mif":
+                        case "-maxInFlight":
+                        case "-max_in_flight":
+                        case "-rs": // round size, replaced by the in flight window
                         case "-round_size":
-                            _roundSize = asInt("round size", args[++x], 1000);
+                            _maxInFlight = asInt("max in flight", args[++x], 1, MAX_IN_FLIGHT);
                             break;
                         case "-d":
                         case "-threads":
-                            _threads = asInt("number of threads", args[++x], 20);
+                            _threads = asInt("number of threads", args[++x], MAX_VT_THREADS);
+                            break;
+                        case "-vt":
+                        case "-virtual_threads":
+                            _virtualThreads = true;
+                            break;
+                        case "-vc":
+                        case "-vt_connections":
+                            _vtConnections = asInt("virtual thread connections", args[++x], 1, MAX_VT_CONNECTIONS);
                             break;
                         case "-j":
                         case "-jitter":
                             _jitter = asInt("jitter", args[++x], 10_000);
                             break;
+                        case "-rate":
+                            _rate = asLong("rate", args[++x], 0, Long.MAX_VALUE);
+                            break;
+                        case "-rrf":
+                        case "-ramp_rate_from":
+                            _rampFrom = asLong("ramp from rate", args[++x], 0, Long.MAX_VALUE);
+                            break;
+                        case "-rpt":
+                        case "-rate_per_thread":
+                            _ratePerThread = true;
+                            break;
                         case "-n":
                         case "-connection_strategy":
                             _connShared = bool("connection strategy", args[++x], SHARED, INDIVIDUAL);
@@ -369,10 +691,42 @@ public class Context {
                         case "-ack_all_frequency":
                             _ackAllFrequency = asInt("ack frequency", args[++x], MIN_WAIT_MS);
                             break;
+                        case "-ka":
+                        case "-ack_async":
+                            _ackAsync = true;
+                            break;
+                        case "-kb":
+                        case "-ack_batch":
+                            _ackBatch = asInt("ack batch", args[++x], 1, MAX_ACK_BATCH);
+                            break;
+                        case "-kms":
+                        case "-ack_flush_millis":
+                            _ackFlushMillis = asLong("ack flush millis", args[++x], 1, MAX_ACK_FLUSH_MS);
+                            break;
                         case "-rf":
                         case "-report_frequency":
                             _reportFrequency = asInt("report frequency", args[++x]);
                             break;
+                        case "-ivf":
+                        case "-interval_file":
+                            _intervalFile = asString(args[++x]);
+                            break;
+                        case "-iv":
+                        case "-interval_millis":
+                            _intervalMillis = asLong("interval millis", args[++x], 1, Long.MAX_VALUE);
+                            break;
+                        case "-mp":
+                        case "-metrics_port":
+                            _metricsPort = asInt("metrics port", args[++x], 1, 65535);
+                            break;
+                        case "-prof":
+                        case "-profile":
+                            _profile = true;
+                            break;
+                        case "-rsf":
+                        case "-results_file":
+                            _resultsFile = asString(args[++x]);
+                            break;
                         case "-cf":
                         case "-creds_file":
                             _credsFile = asString(args[++x]);
@@ -441,6 +795,17 @@ public class Context {
         else if (_messageCount < 1) {
             error("Message count required!");
         }
+        else if (_threads > MAX_THREADS && !_virtualThreads) {
+            error("More than " + MAX_THREADS + " threads requires virtual threads (-vt)!");
+        }
+        else if (_virtualThreads && !VirtualThreads.isAvailable() && (_threads > MAX_THREADS || _vtConnections > MAX_THREADS)) {
+            // -vt falls back to platform threads, so the platform thread limit applies
+            error("Virtual threads are not available before JDK 21, -vt is limited to " + MAX_THREADS + " threads and connections!");
+        }
+        else if (_ackAsync && _virtualThreads) {
+            // each consumer has its own ack sender on a platform thread, too many with virtual thread clients
+            error("Ack async (-ka) cannot be used with virtual threads (-vt)!");
+        }
         else if (_threads == 1 && _action.isQueue()) {
             error("Queue subscribing requires multiple threads!");
         }
@@ -455,23 +820,71 @@ public class Context {
         }
 
         latencyFlag = _latencyFlag;
+        latencyHighRes = _latencyHighRes;
         servers = _servers;
         credsFile = _credsFile;
         connectionTimeoutMillis = _connectionTimeoutMillis;
         reconnectWaitMillis = _reconnectWaitMillis;
         stream = _stream;
-        subject = _subject;
+        // key value and object store actions always pick keys from the key space, the template is the key
+        subjectTemplate = _subjectTemplate == null && _action != null && (_action.isKvAction() || _action.isObjectStoreAction())
+            ? SubjectSpace.KEY : _subjectTemplate;
+        // each object store message is a whole object, so the default count is much lower
+        // and the object names default to one per message
+        boolean osDefaults = _action != null && _action.isObjectStoreAction();
+        int _osMessageCount = _messageCountSet ? _messageCount : DEFAULT_OS_MESSAGE_COUNT;
+        keySpace = osDefaults && !_keySpaceSet ? Math.min(_osMessageCount, MAX_KEY_SPACE) : _keySpace;
+        keyDistribution = _keyDistribution;
+        SubjectSpace _subjectSpace = null;
+        if (subjectTemplate != null) {
+            try {
+                _subjectSpace = new SubjectSpace(subjectTemplate, keySpace, keyDistribution);
+            }
+            catch (IllegalArgumentException e) {
+                error(e.getMessage());
+            }
+        }
+        subjectSpace = _subjectSpace;
+        subject = subjectSpace == null ? _subject : subjectSpace.getWildcard();
         lcsv = _lcsv;
-        messageCount = _messageCount;
+        lbin = _lbin;
+        lmap = _lmap;
+        latencyRingSize = _latencyRingSize;
+        messageCount = osDefaults ? _osMessageCount : _messageCount;
         threads = _threads;
         connShared = _connShared;
+        virtualThreads = _virtualThreads;
+        vtConnections = Math.min(_vtConnections, _threads);
         jitter = _jitter;
+        rate = _rate;
+        ratePerThread = _ratePerThread;
+        rampFrom = _rampFrom;
+        globalPacer = rate > 0 && !ratePerThread ? newPacer(messageCount) : null;
         payloadSize = _payloadSize;
         payloadVariants = _payloadVariants;
-        roundSize = _roundSize;
+        payloadType = _payloadType;
+        payloadFile = _payloadFile;
+        maxInFlight = _maxInFlight;
         ackPolicy = _ackPolicy;
         ackAllFrequency = _ackAllFrequency;
+        ackAsync = _ackAsync;
+        ackBatch = _ackBatch;
+        ackFlushMillis = _ackFlushMillis;
         batchSize = _batchSize;
+        batchBytes = _batchBytes;
+        thresholdPercent = _thresholdPercent;
+        kvBucket = _kvBucket;
+        kvHistory = _kvHistory;
+        osBucket = _osBucket;
+        osObjectSize = _osObjectSize;
+        osChunkSize = _osChunkSize;
+        osStorageType = _osStorageType;
+        if (_kvReadPercent == null) {
+            kvReadPercent = _action == Action.KV_GET ? 100 : 0;
+        }
+        else {
+            kvReadPercent = _kvReadPercent;
+        }
 
         requestWaitDuration = Duration.ofMillis(_requestWaitMillis);
         readTimeoutDuration = Duration.ofMillis(_readTimeoutMillis);
@@ -483,22 +896,25 @@ public class Context {
         else {
             reportFrequency = _reportFrequency;
         }
+        intervalFile = _intervalFile;
+        intervalMillis = _intervalMillis;
+        metricsPort = _metricsPort;
+        profile = _profile;
+        resultsFile = _resultsFile;
 
         queueName = _queueName;
         subNameWhenQueue = _subDurableWhenQueue;
         lastServerIndex = servers.length;   // will roll to 0 first use, see getNextServer
 
-        payloads = new ArrayList<>();
-        if (payloadVariants == 1) {
-            payloads.add(new byte[payloadSize]);
+        Payloads _payloads = null;
+        try {
+            _payloads = new Payloads(payloadType, payloadSize, payloadVariants, payloadFile);
         }
-        else {
-            int lower = payloadSize - (payloadSize / 10);
-            int upper = payloadSize + (payloadSize / 10);
-            for (int i = 0; i < payloadVariants; i++) {
-                payloads.add(new byte[ThreadLocalRandom.current().nextInt(lower, upper)]);
-            }
+        catch (IOException e) {
+            error("Cannot read payload file: " + e.getMessage());
         }
+        payloads = _payloads;
+        payloadCursors = ThreadLocal.withInitial(payloads::cursor);
 
         long total = 0;
         perThread = new long[threads];
@@ -517,7 +933,7 @@ public class Context {
         }
 
         if (_customAppClassName == null) {
-            app = new Application() {};
+            app = intervalFile == null ? new Application() {} : new IntervalApplication();
         }
         else {
             app = (Application)classForName(_customAppClassName, "Custom Application");
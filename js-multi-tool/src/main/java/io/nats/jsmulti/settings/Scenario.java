@@ -0,0 +1,195 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.settings;
+
+import io.nats.client.support.JsonParser;
+import io.nats.client.support.JsonValue;
+import io.nats.client.support.JsonValueUtils;
+import io.nats.jsmulti.shared.TerminalException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A phased load profile. The args are the same flat options as a json config
+ * and apply to every phase. Each phase runs for a number of seconds at a rate, or for a number of messages,
+ * with its own thread count and optionally its own args. For example:
+ * <pre>
+ * {
+ *   "args": {"a": "PubAsync", "u": "orders", "lf": true},
+ *   "phases": [
+ *     {"name": "warmup",   "type": "warmup",   "seconds": 10, "rate": 1000,  "threads": 2},
+ *     {"name": "ramp",     "type": "ramp",     "seconds": 30, "fromRate": 1000, "rate": 10000, "threads": 4},
+ *     {"name": "steady",   "type": "steady",   "seconds": 60, "rate": 10000, "threads": 4},
+ *     {"name": "spike",    "type": "spike",    "seconds": 10, "rate": 50000, "threads": 8},
+ *     {"name": "cooldown", "type": "cooldown", "seconds": 20, "rate": 1000,  "threads": 2}
+ *   ]
+ * }
+ * </pre>
+ */
+public class Scenario {
+
+    public enum PhaseType {
+        WARMUP("warmup"),
+        RAMP("ramp"),
+        STEADY("steady"),
+        SPIKE("spike"),
+        COOLDOWN("cooldown");
+
+        private final String label;
+
+        PhaseType(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static PhaseType getInstance(String text) {
+            for (PhaseType t : PhaseType.values()) {
+                if (t.label.equalsIgnoreCase(text)) {
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static class Phase {
+        public final String name;
+        public final PhaseType type;
+        public final long seconds;
+        public final long messages;
+        public final long rate;
+        public final long fromRate;
+        public final int threads;
+        public final JsonValue args;
+
+        Phase(JsonValue jv, int index) {
+            name = JsonValueUtils.readString(jv, "name", "phase-" + index);
+            String t = JsonValueUtils.readString(jv, "type", PhaseType.STEADY.getLabel());
+            type = PhaseType.getInstance(t);
+            if (type == null) {
+                throw new TerminalException("Invalid phase type [" + t + "] in phase " + name);
+            }
+            seconds = JsonValueUtils.readLong(jv, "seconds", 0);
+            rate = JsonValueUtils.readLong(jv, "rate", 0);
+            fromRate = type == PhaseType.RAMP ? JsonValueUtils.readLong(jv, "fromRate", 1) : 0;
+            threads = JsonValueUtils.readInteger(jv, "threads", 1);
+            args = JsonValueUtils.readValue(jv, "args");
+
+            long m = JsonValueUtils.readLong(jv, "messages", 0);
+            if (m < 1) {
+                if (seconds < 1 || rate < 1) {
+                    throw new TerminalException("Phase " + name + " requires messages or seconds and rate.");
+                }
+                // a ramp sends at the average of its from and to rates
+                m = (type == PhaseType.RAMP ? (fromRate + rate) / 2 : rate) * seconds;
+            }
+            if (m > Integer.MAX_VALUE) {
+                throw new TerminalException("Phase " + name + " has too many messages: " + m);
+            }
+            messages = m;
+        }
+
+        /**
+         * Warmup phases run but their stats are not kept
+         * @return true if the stats are excluded
+         */
+        public boolean isExcluded() {
+            return type == PhaseType.WARMUP;
+        }
+
+        @Override
+        public String toString() {
+            String r = rate < 1 ? "no rate"
+                : type == PhaseType.RAMP ? fromRate + " to " + rate + " msgs/sec" : rate + " msgs/sec";
+            return name + " (" + type + ") " + messages + " msgs, " + r + ", " + threads + " thread(s)";
+        }
+    }
+
+    private final JsonValue args;
+    private final List<Phase> phases;
+
+    public Scenario(String json) throws IOException {
+        this(JsonParser.parse(json));
+    }
+
+    public Scenario(JsonValue jv) {
+        args = JsonValueUtils.readValue(jv, "args");
+        List<Phase> list = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        List<JsonValue> jvPhases = JsonValueUtils.readArray(jv, "phases");
+        for (int x = 0; x < jvPhases.size(); x++) {
+            Phase phase = new Phase(jvPhases.get(x), x + 1);
+            // results are kept by phase name
+            if (!names.add(phase.name)) {
+                throw new TerminalException("Duplicate phase name " + phase.name + ", phase names must be unique.");
+            }
+            list.add(phase);
+        }
+        if (list.isEmpty()) {
+            throw new TerminalException("Scenario requires at least one phase.");
+        }
+        phases = Collections.unmodifiableList(list);
+    }
+
+    public static Scenario load(String jsonFileSpec) throws IOException {
+        return new Scenario(JsonParser.parse(Files.readAllBytes(Paths.get(jsonFileSpec))));
+    }
+
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    /**
+     * The arguments for a phase, the scenario args then the phase args,
+     * then the message count, threads and rate for the phase
+     * @param phase the phase
+     * @return the arguments
+     */
+    public Arguments getArguments(Phase phase) {
+        Arguments a = Arguments.instance();
+        if (args != null) {
+            a.addJsonConfig(args);
+        }
+        if (phase.args != null) {
+            a.addJsonConfig(phase.args);
+        }
+        a.messageCount((int)phase.messages).threads(phase.threads);
+        if (phase.rate > 0) {
+            a.rate(phase.rate);
+            if (phase.fromRate > 0) {
+                a.rampFrom(phase.fromRate);
+            }
+        }
+        return a;
+    }
+
+    public Context getContext(Phase phase) {
+        return new Context(getArguments(phase));
+    }
+}
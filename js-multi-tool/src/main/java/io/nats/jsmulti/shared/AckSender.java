@@ -0,0 +1,160 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import io.nats.client.Message;
+import io.nats.client.api.AckPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acks messages on its own thread so the consumer does not wait for them.
+ * The consumer adds each message it is done with, the sender collects them and flushes
+ * when the batch is full or the oldest message has waited the flush time.
+ * With ack policy all a flush is one ack of the newest message, which covers the rest,
+ * with ack policy explicit every message in the flush is acked.
+ * <p>
+ * The sender keeps its own histograms and counts, close waits for the last flush
+ * and adds them to the stats on the closing thread, which must be the thread that owns the stats.
+ */
+public class AckSender implements AutoCloseable {
+    private static final class Pending {
+        final Message m;
+        final long added;
+
+        Pending(Message m, long added) {
+            this.m = m;
+            this.added = added;
+        }
+    }
+
+    private final Stats stats;
+    private final boolean ackAll;
+    private final int batch;
+    private final long flushNanos;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    // only touched by the sender thread until it is joined
+    private final Histogram ackHistogram = new Histogram();
+    private final Histogram latencyHistogram = new Histogram();
+    private long acks;
+    private long acked;
+    private long ackElapsed;
+    private RuntimeException error;
+
+    public AckSender(Stats stats, AckPolicy ackPolicy, int batch, long flushMillis) {
+        this.stats = stats;
+        this.ackAll = ackPolicy == AckPolicy.All;
+        this.batch = batch;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        thread = new Thread(this::run, "ack-sender-" + stats.id);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void add(Message m) {
+        queue.add(new Pending(m, System.nanoTime()));
+    }
+
+    private void run() {
+        List<Pending> pending = new ArrayList<>(batch);
+        long deadline = 0;
+        try {
+            while (!closed || !queue.isEmpty() || !pending.isEmpty()) {
+                long wait = pending.isEmpty() ? flushNanos : deadline - System.nanoTime();
+                if (wait > 0) {
+                    Pending p = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (p != null) {
+                        if (pending.isEmpty()) {
+                            deadline = p.added + flushNanos;
+                        }
+                        pending.add(p);
+                        queue.drainTo(pending, batch - pending.size());
+                    }
+                }
+                if (!pending.isEmpty() && (pending.size() >= batch || closed || System.nanoTime() - deadline >= 0)) {
+                    flush(pending);
+                    pending.clear();
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (RuntimeException e) {
+            error = e;
+        }
+    }
+
+    private void flush(List<Pending> pending) {
+        long start = System.nanoTime();
+        if (ackAll) {
+            ack(pending.get(pending.size() - 1).m);
+            long sent = System.nanoTime();
+            for (Pending p : pending) {
+                latencyHistogram.record(sent - p.added);
+            }
+        }
+        else {
+            for (Pending p : pending) {
+                ack(p.m);
+                latencyHistogram.record(System.nanoTime() - p.added);
+            }
+        }
+        ackElapsed += System.nanoTime() - start;
+        acked += pending.size();
+    }
+
+    private void ack(Message m) {
+        long start = System.nanoTime();
+        m.ack();
+        ackHistogram.record(System.nanoTime() - start);
+        acks++;
+    }
+
+    /**
+     * Flush what was added, wait for the sender to finish and add its histograms and counts to the stats.
+     * If interrupted while waiting, the sender is stopped without flushing the rest, what it did is still added
+     * and the interrupt flag is set again.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+                thread.interrupt();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        stats.recordOps(Stats.Op.ACK, ackHistogram);
+        stats.recordOps(Stats.Op.ACK_LATENCY, latencyHistogram);
+        stats.countAcks(acks, acked, ackElapsed);
+        if (error != null) {
+            throw error;
+        }
+    }
+}
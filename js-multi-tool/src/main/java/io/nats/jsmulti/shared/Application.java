@@ -15,6 +15,8 @@ package io.nats.jsmulti.shared;
 
 import io.nats.jsmulti.settings.Context;
 
+import java.util.List;
+
 public interface Application {
     default void init(Context ctx) {
     }
@@ -22,6 +24,14 @@ public interface Application {
     default void track(Stats stats, boolean isFinal) {
     }
 
+    // called with all the stats of a run, just before the run's threads are started
+    default void runStarted(List<Stats> statsList) {
+    }
+
+    // called after the final track of every stats of the run
+    default void runFinished(List<Stats> statsList) {
+    }
+
     default void report(Object o) {
         System.out.println(format(o));
     }
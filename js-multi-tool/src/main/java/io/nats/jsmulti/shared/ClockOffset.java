@@ -0,0 +1,105 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+/**
+ * The offset from the local clock to the server clock, estimated NTP style.
+ * Each exchange is a local send time, the server's stamp and a local receive time.
+ * The stamp was taken somewhere between the send and the receive, so the offset is
+ * estimated from the middle of the round trip and is off by at most half the round trip.
+ * The exchange with the shortest round trip gives the tightest bound.
+ */
+public class ClockOffset {
+
+    /**
+     * No estimate, times are used as they are and the uncertainty is not known
+     */
+    public static final ClockOffset NONE = new ClockOffset(0, 0, 0);
+
+    private final long offsetNanos;
+    private final long uncertaintyNanos;
+    private final int exchanges;
+
+    public ClockOffset(long offsetNanos, long uncertaintyNanos, int exchanges) {
+        this.offsetNanos = offsetNanos;
+        this.uncertaintyNanos = uncertaintyNanos;
+        this.exchanges = exchanges;
+    }
+
+    /**
+     * Estimate from exchanges, all times are epoch nanos
+     * @param sent the local times the exchanges were sent
+     * @param stamped the server stamps
+     * @param received the local times the exchanges came back
+     * @return the estimate from the exchange with the shortest round trip
+     */
+    public static ClockOffset estimate(long[] sent, long[] stamped, long[] received) {
+        int best = -1;
+        long bestRtt = Long.MAX_VALUE;
+        for (int x = 0; x < sent.length; x++) {
+            long rtt = received[x] - sent[x];
+            if (rtt >= 0 && rtt < bestRtt) {
+                bestRtt = rtt;
+                best = x;
+            }
+        }
+        if (best == -1) {
+            return NONE;
+        }
+        long middle = sent[best] + bestRtt / 2;
+        return new ClockOffset(stamped[best] - middle, (bestRtt + 1) / 2, sent.length);
+    }
+
+    /**
+     * A local time on the server clock
+     * @param localEpochNanos the local epoch nanos
+     * @return the epoch nanos on the server clock
+     */
+    public long toServer(long localEpochNanos) {
+        return localEpochNanos + offsetNanos;
+    }
+
+    /**
+     * The server clock minus the local clock
+     * @return the offset in nanoseconds
+     */
+    public long getOffsetNanos() {
+        return offsetNanos;
+    }
+
+    /**
+     * How far the offset might be off, half the round trip of the exchange it came from
+     * @return the uncertainty in nanoseconds, 0 when there is no estimate
+     */
+    public long getUncertaintyNanos() {
+        return uncertaintyNanos;
+    }
+
+    public int getExchanges() {
+        return exchanges;
+    }
+
+    public boolean isEstimated() {
+        return exchanges > 0;
+    }
+
+    @Override
+    public String toString() {
+        if (!isEstimated()) {
+            return "Clock offset not estimated";
+        }
+        return "Clock offset to the server " + Stats.formatMillis(offsetNanos) + " ms"
+            + " +/- " + Stats.formatMillis(uncertaintyNanos) + " ms, best of " + exchanges + " exchanges";
+    }
+}
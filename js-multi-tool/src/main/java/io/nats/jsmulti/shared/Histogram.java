@@ -0,0 +1,249 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import io.nats.client.support.JsonValue;
+import io.nats.client.support.JsonValueUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Log-linear bucketed histogram of non-negative long values, HdrHistogram style.
+ * Values below SUB_BUCKET_COUNT are exact, above that every power of 2 is split
+ * into SUB_BUCKET_COUNT linear buckets, so the relative error of any reported
+ * value is at most 1 / SUB_BUCKET_COUNT. Memory is fixed once the first value is recorded.
+ * Not thread safe, meant to be written by one thread and merged with {@link #add(Histogram)}.
+ */
+public class Histogram {
+    public static final int SUB_BUCKET_BITS = 6;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    public static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    public static final double[] REPORT_PERCENTILES = new double[] {50, 90, 99, 99.9, 99.99};
+
+    private long[] counts;
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public Histogram() {}
+
+    public Histogram(JsonValue jv) {
+        count = JsonValueUtils.readLong(jv, "count", 0);
+        sum = JsonValueUtils.readLong(jv, "sum", 0);
+        min = JsonValueUtils.readLong(jv, "min", Long.MAX_VALUE);
+        max = JsonValueUtils.readLong(jv, "max", 0);
+        List<Long> indexes = JsonValueUtils.readLongList(jv, "indexes");
+        List<Long> bucketCounts = JsonValueUtils.readLongList(jv, "counts");
+        if (!indexes.isEmpty()) {
+            counts = new long[BUCKET_COUNT];
+            for (int x = 0; x < indexes.size(); x++) {
+                counts[indexes.get(x).intValue()] = bucketCounts.get(x);
+            }
+        }
+    }
+
+    public Map<String, JsonValue> toJsonValueMap() {
+        JsonValueUtils.ArrayBuilder indexBuilder = JsonValueUtils.arrayBuilder();
+        JsonValueUtils.ArrayBuilder countBuilder = JsonValueUtils.arrayBuilder();
+        if (counts != null) {
+            for (int x = 0; x < BUCKET_COUNT; x++) {
+                if (counts[x] > 0) {
+                    indexBuilder.add(x);
+                    countBuilder.add(counts[x]);
+                }
+            }
+        }
+        return JsonValueUtils.mapBuilder()
+            .put("count", count)
+            .put("sum", sum)
+            .put("min", min)
+            .put("max", max)
+            .put("indexes", indexBuilder.toJsonValue())
+            .put("counts", countBuilder.toJsonValue())
+            .toJsonValue().map;
+    }
+
+    public JsonValue toJsonValue() {
+        return new JsonValue(toJsonValueMap());
+    }
+
+    public static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int)value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int)((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    public static long lowestEquivalentValue(int index) {
+        int group = index / SUB_BUCKET_COUNT;
+        long sub = index % SUB_BUCKET_COUNT;
+        return group == 0 ? sub : (SUB_BUCKET_COUNT + sub) << (group - 1);
+    }
+
+    public static long highestEquivalentValue(int index) {
+        int group = index / SUB_BUCKET_COUNT;
+        return group == 0
+            ? lowestEquivalentValue(index)
+            : lowestEquivalentValue(index) + (1L << (group - 1)) - 1;
+    }
+
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    public void record(long value, long howMany) {
+        if (value < 0) {
+            value = 0;
+        }
+        if (counts == null) {
+            counts = new long[BUCKET_COUNT];
+        }
+        counts[indexOf(value)] += howMany;
+        count += howMany;
+        sum += value * howMany;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public void add(Histogram other) {
+        if (other == null || other.count == 0 || other.counts == null) {
+            return;
+        }
+        if (counts == null) {
+            counts = new long[BUCKET_COUNT];
+        }
+        long[] otherCounts = other.counts;
+        for (int x = 0; x < BUCKET_COUNT; x++) {
+            counts[x] += otherCounts[x];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public Histogram copy() {
+        Histogram h = new Histogram();
+        h.add(this);
+        return h;
+    }
+
+    /**
+     * The values recorded since an earlier copy of this histogram.
+     * The min and max of the result are to the precision of the buckets.
+     * @param earlier the earlier copy, can be null
+     * @return a new histogram
+     */
+    public Histogram delta(Histogram earlier) {
+        Histogram h = copy();
+        if (earlier == null || earlier.counts == null || h.counts == null) {
+            return h;
+        }
+        h.count = 0;
+        h.min = Long.MAX_VALUE;
+        h.max = 0;
+        for (int x = 0; x < BUCKET_COUNT; x++) {
+            long c = Math.max(0, h.counts[x] - earlier.counts[x]);
+            h.counts[x] = c;
+            if (c > 0) {
+                h.count += c;
+                h.min = Math.min(h.min, lowestEquivalentValue(x));
+                h.max = Math.min(highestEquivalentValue(x), max);
+            }
+        }
+        h.sum = Math.max(0, sum - earlier.sum);
+        return h;
+    }
+
+    public void reset() {
+        if (counts != null) {
+            Arrays.fill(counts, 0);
+        }
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double)sum / count;
+    }
+
+    /**
+     * The count of values at or below the value, to the precision of the buckets,
+     * that is including every value in the bucket that contains the value
+     * @param value the value
+     * @return the count
+     */
+    public long getCountAtOrBelow(long value) {
+        long[] c = counts;
+        if (c == null || value < 0) {
+            return 0;
+        }
+        long running = 0;
+        int last = indexOf(value);
+        for (int x = 0; x <= last; x++) {
+            running += c[x];
+        }
+        return running;
+    }
+
+    /**
+     * The value at the percentile, reported as the highest value equivalent to the
+     * bucket that contains it, capped by the actual maximum recorded.
+     * @param percentile 0 to 100
+     * @return the value
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        double p = Math.min(Math.max(percentile, 0), 100);
+        long target = Math.max(1, (long)Math.ceil(p / 100 * count));
+        long running = 0;
+        for (int x = 0; x < BUCKET_COUNT; x++) {
+            running += counts[x];
+            if (running >= target) {
+                return Math.min(highestEquivalentValue(x), max);
+            }
+        }
+        return max;
+    }
+}
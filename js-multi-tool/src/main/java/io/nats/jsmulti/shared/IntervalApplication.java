@@ -0,0 +1,62 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import io.nats.jsmulti.settings.Context;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The application used when there is an interval file (-ivf) and no custom application.
+ * Records every run with an {@link IntervalRecorder}.
+ * A custom application can extend this to keep the interval recording.
+ */
+public class IntervalApplication implements Application {
+
+    private Context ctx;
+    private IntervalRecorder recorder;
+
+    @Override
+    public void init(Context ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void runStarted(List<Stats> statsList) {
+        if (ctx == null || ctx.intervalFile == null) {
+            return;
+        }
+        recorder = new IntervalRecorder(ctx.intervalFile, ctx.intervalMillis);
+        try {
+            recorder.start(statsList);
+        }
+        catch (IOException e) {
+            throw new TerminalException("Cannot write interval file " + ctx.intervalFile, e);
+        }
+    }
+
+    @Override
+    public void runFinished(List<Stats> statsList) {
+        if (recorder != null) {
+            try {
+                recorder.stop();
+            }
+            catch (IOException e) {
+                reportEx(e);
+            }
+            recorder = null;
+        }
+    }
+}
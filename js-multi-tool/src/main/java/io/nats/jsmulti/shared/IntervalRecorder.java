@@ -0,0 +1,275 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import io.nats.client.support.JsonValue;
+import io.nats.client.support.JsonValueUtils;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records what happened in each interval of a run, the totals of all the stats of the run,
+ * as json lines or as csv when the file ends with .csv. Each row has the messages, msgs/sec,
+ * bytes/sec, errors and the latency percentiles for the interval, so a stall in the middle
+ * of a long run shows up instead of being averaged away.
+ * The stats are read from the scheduler thread without locking so the run is never slowed down,
+ * which means a row can be off by the few messages counted while it was being made.
+ * Runs in the same process write to the same file, numbered by the run column.
+ */
+public class IntervalRecorder {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+    public static final double[] INTERVAL_PERCENTILES = new double[] {50, 90, 99};
+
+    private static final Set<String> STARTED_FILES = ConcurrentHashMap.newKeySet();
+    private static final Object RUN_LOCK = new Object();
+    private static int lastRun;
+
+    private final String fileSpec;
+    private final long intervalMillis;
+    private final boolean csv;
+
+    private BufferedWriter writer;
+    private ScheduledExecutorService scheduler;
+    private List<Stats> statsList;
+    private int run;
+    private long startNanos;
+    private long lastNanos;
+
+    // the previous cumulative values, per stats
+    private long[] lastMessages;
+    private long[] lastBytes;
+    private long[] lastErrors;
+    private Histogram[][] lastHistograms;
+
+    public IntervalRecorder(String fileSpec, long intervalMillis) {
+        this.fileSpec = fileSpec;
+        this.intervalMillis = intervalMillis < 1 ? DEFAULT_INTERVAL_MILLIS : intervalMillis;
+        csv = fileSpec.toLowerCase().endsWith(".csv");
+    }
+
+    public String getFileSpec() {
+        return fileSpec;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public synchronized void start(List<Stats> statsList) throws IOException {
+        boolean first = STARTED_FILES.add(fileSpec);
+        writer = new BufferedWriter(new FileWriter(fileSpec, !first));
+        if (first && csv) {
+            writer.write(csvHeader());
+        }
+        synchronized (RUN_LOCK) {
+            run = ++lastRun;
+        }
+
+        this.statsList = new ArrayList<>(statsList);
+        int size = statsList.size();
+        lastMessages = new long[size];
+        lastBytes = new long[size];
+        lastErrors = new long[size];
+        lastHistograms = new Histogram[size][];
+        for (int x = 0; x < size; x++) {
+            lastHistograms[x] = new Histogram[Stats.Op.values().length + 1];
+        }
+
+        startNanos = System.nanoTime();
+        lastNanos = startNanos;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "interval-recorder");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::recordSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the schedule, records the last partial interval and closes the file
+     * @throws IOException if the file cannot be written
+     */
+    public void stop() throws IOException {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            scheduler.awaitTermination(intervalMillis * 2, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            scheduler = null;
+            record();
+            writer.close();
+        }
+    }
+
+    private void recordSafely() {
+        try {
+            synchronized (this) {
+                record();
+                writer.flush();
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Interval recorder cannot write " + fileSpec + ": " + e);
+        }
+    }
+
+    private void record() throws IOException {
+        long now = System.nanoTime();
+        long intervalNanos = now - lastNanos;
+        if (intervalNanos <= 0) {
+            return;
+        }
+        lastNanos = now;
+
+        Stats.Op[] ops = Stats.Op.values();
+        long messages = 0;
+        long bytes = 0;
+        long errors = 0;
+        Histogram[] histograms = new Histogram[ops.length + 1];
+        for (int x = 0; x < histograms.length; x++) {
+            histograms[x] = new Histogram();
+        }
+
+        for (int s = 0; s < statsList.size(); s++) {
+            Stats stats = statsList.get(s);
+            long m = stats.getMessageCount();
+            long b = stats.getBytes();
+            long e = errorsOf(stats);
+            messages += m - lastMessages[s];
+            bytes += b - lastBytes[s];
+            errors += e - lastErrors[s];
+            lastMessages[s] = m;
+            lastBytes[s] = b;
+            lastErrors[s] = e;
+            for (int x = 0; x < histograms.length; x++) {
+                Histogram live = x < ops.length ? stats.getOpHistogram(ops[x]) : stats.getFullHistogram();
+                Histogram copy = live.copy();
+                histograms[x].add(copy.delta(lastHistograms[s][x]));
+                lastHistograms[s][x] = copy;
+            }
+        }
+
+        long time = System.currentTimeMillis();
+        long elapsedMillis = (now - startNanos) / Stats.NANOS_PER_MILLI_L;
+        double seconds = intervalNanos / Stats.NANOS_PER_SECOND;
+        if (csv) {
+            writer.write(csvRow(time, elapsedMillis, intervalNanos, messages, messages / seconds, bytes / seconds, errors, histograms));
+        }
+        else {
+            writer.write(jsonRow(time, elapsedMillis, intervalNanos, messages, messages / seconds, bytes / seconds, errors, histograms));
+        }
+        writer.write("\n");
+    }
+
+    // request failures plus a thread that failed
+    private static long errorsOf(Stats stats) {
+        return stats.getRequestTimeouts() + stats.getRequestNoResponders() + (stats.getException() == null ? 0 : 1);
+    }
+
+    private static String histogramName(int x) {
+        Stats.Op[] ops = Stats.Op.values();
+        return x < ops.length ? ops[x].name().toLowerCase() : "latency";
+    }
+
+    private static String percentileName(double p) {
+        return "p" + (p == (long)p ? "" + (long)p : "" + p);
+    }
+
+    // plain decimal, no grouping, so the csv stays parseable
+    private static String dec(double d) {
+        return String.format(Locale.ROOT, "%.3f", d);
+    }
+
+    private static String csvHeader() {
+        StringBuilder sb = new StringBuilder("run,time,elapsed_ms,interval_ms,messages,msgs_per_sec,bytes_per_sec,errors");
+        for (int x = 0; x <= Stats.Op.values().length; x++) {
+            String name = histogramName(x);
+            sb.append(',').append(name).append("_count");
+            for (double p : INTERVAL_PERCENTILES) {
+                sb.append(',').append(name).append('_').append(percentileName(p)).append("_ms");
+            }
+            sb.append(',').append(name).append("_max_ms");
+        }
+        return sb.append("\n").toString();
+    }
+
+    private String csvRow(long time, long elapsedMillis, long intervalNanos, long messages,
+                          double msgsPerSec, double bytesPerSec, long errors, Histogram[] histograms) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(run).append(',').append(time).append(',').append(elapsedMillis)
+            .append(',').append(dec(intervalNanos / Stats.NANOS_PER_MILLI))
+            .append(',').append(messages)
+            .append(',').append(dec(msgsPerSec))
+            .append(',').append(dec(bytesPerSec))
+            .append(',').append(errors);
+        for (Histogram h : histograms) {
+            sb.append(',').append(h.getCount());
+            for (double p : INTERVAL_PERCENTILES) {
+                sb.append(',');
+                if (h.getCount() > 0) {
+                    sb.append(dec(h.getValueAtPercentile(p) / Stats.NANOS_PER_MILLI));
+                }
+            }
+            sb.append(',');
+            if (h.getCount() > 0) {
+                sb.append(dec(h.getMax() / Stats.NANOS_PER_MILLI));
+            }
+        }
+        return sb.toString();
+    }
+
+    private String jsonRow(long time, long elapsedMillis, long intervalNanos, long messages,
+                           double msgsPerSec, double bytesPerSec, long errors, Histogram[] histograms) {
+        JsonValueUtils.MapBuilder mb = JsonValueUtils.mapBuilder()
+            .put("run", run)
+            .put("time", time)
+            .put("elapsed_ms", elapsedMillis)
+            .put("interval_ms", intervalNanos / Stats.NANOS_PER_MILLI)
+            .put("messages", messages)
+            .put("msgs_per_sec", msgsPerSec)
+            .put("bytes_per_sec", bytesPerSec)
+            .put("errors", errors);
+        for (int x = 0; x < histograms.length; x++) {
+            Histogram h = histograms[x];
+            if (h.getCount() > 0) {
+                JsonValueUtils.MapBuilder hmb = JsonValueUtils.mapBuilder().put("count", h.getCount());
+                for (double p : INTERVAL_PERCENTILES) {
+                    hmb.put(percentileName(p) + "_ms", h.getValueAtPercentile(p) / Stats.NANOS_PER_MILLI);
+                }
+                hmb.put("max_ms", h.getMax() / Stats.NANOS_PER_MILLI);
+                mb.put(histogramName(x), hmb.toJsonValue());
+            }
+        }
+        JsonValue jv = mb.toJsonValue();
+        return jv.toJson();
+    }
+}
@@ -0,0 +1,62 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import java.io.*;
+import java.util.Arrays;
+
+import static io.nats.jsmulti.shared.LatencyWriter.BINARY_MAGIC;
+
+/**
+ * Converts a binary latency log written with -lbin into the same csv format written with -lcsv
+ * Usage: LatencyLogConverter binary-file-spec csv-file-spec
+ * Gradle: gradle latencyLogToCsv --args="binary-file-spec csv-file-spec"
+ */
+public class LatencyLogConverter {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: LatencyLogConverter binary-file-spec csv-file-spec");
+            System.exit(-1);
+        }
+        long records = convert(args[0], args[1]);
+        System.out.println("Converted " + Stats.format(records) + " latency records to " + args[1]);
+    }
+
+    public static long convert(String binaryFileSpec, String csvFileSpec) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(binaryFileSpec), LatencyWriter.BUFFER_SIZE));
+             LatencyWriter out = LatencyWriter.csv(csvFileSpec))
+        {
+            byte[] magic = new byte[BINARY_MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, BINARY_MAGIC)) {
+                throw new IOException("Not a latency log: " + binaryFileSpec);
+            }
+            in.readLong(); // nanos per unit, the csv is written in the same units as the binary
+
+            long records = 0;
+            while (true) {
+                long pubTime;
+                try {
+                    pubTime = in.readLong();
+                }
+                catch (EOFException e) {
+                    return records;
+                }
+                out.write(pubTime, in.readLong(), in.readLong());
+                records++;
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, preallocated single producer / single consumer ring of latency samples.
+ * Each sample is 3 primitive longs (publish time, server time, received time) so offering
+ * a sample does not allocate. When the ring is full the sample is dropped and counted
+ * instead of blocking the producer.
+ */
+public class LatencyRing {
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private static final int SLOT_SIZE = 3;
+
+    public interface Handler {
+        void handle(long pubTime, long serverTime, long receivedTime);
+    }
+
+    private final long[] buffer;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next slot to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next slot to write, written by the producer
+
+    private long producerHeadCache; // producer only
+    private long dropped;           // producer only
+
+    public LatencyRing(int requestedCapacity) {
+        int c = 1;
+        while (c < requestedCapacity) {
+            c <<= 1;
+        }
+        capacity = c;
+        mask = c - 1;
+        buffer = new long[c * SLOT_SIZE];
+    }
+
+    /**
+     * Producer side. Never blocks.
+     * @return true if the sample was added, false if it was dropped because the ring is full
+     */
+    public boolean offer(long pubTime, long serverTime, long receivedTime) {
+        long t = tail.get();
+        if (t - producerHeadCache >= capacity) {
+            producerHeadCache = head.get();
+            if (t - producerHeadCache >= capacity) {
+                dropped++;
+                return false;
+            }
+        }
+        int ix = (int)(t & mask) * SLOT_SIZE;
+        buffer[ix] = pubTime;
+        buffer[ix + 1] = serverTime;
+        buffer[ix + 2] = receivedTime;
+        tail.lazySet(t + 1); // ordered store, publishes the slot to the consumer
+        return true;
+    }
+
+    /**
+     * Consumer side. Hands every available sample to the handler.
+     * @return the number of samples drained
+     */
+    public int drain(Handler handler) {
+        long h = head.get();
+        long t = tail.get();
+        if (h == t) {
+            return 0;
+        }
+        for (long x = h; x < t; x++) {
+            int ix = (int)(x & mask) * SLOT_SIZE;
+            handler.handle(buffer[ix], buffer[ix + 1], buffer[ix + 2]);
+        }
+        head.lazySet(t);
+        return (int)(t - h);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The number of samples dropped because the ring was full.
+     * Only reliable once the producer has finished.
+     * @return the count
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,168 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes latency samples to a file without allocating per sample.
+ * Csv writes text through a buffered FileChannel.
+ * Binary writes a header followed by fixed width records of 3 big endian longs
+ * (publish time, server time, received time), either buffered or memory mapped.
+ * Use {@link LatencyLogConverter} to turn a binary log into csv after the run.
+ */
+public abstract class LatencyWriter implements Closeable {
+
+    public static final byte[] BINARY_MAGIC = "JSMLAT01".getBytes(StandardCharsets.US_ASCII);
+    public static final int BINARY_HEADER_SIZE = BINARY_MAGIC.length + 8; // magic + nanos per time unit
+    public static final int BINARY_RECORD_SIZE = 3 * 8;
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final long MAP_REGION_SIZE = 64L * 1024 * 1024;
+
+    protected final FileChannel channel;
+
+    protected LatencyWriter(String fileSpec) throws IOException {
+        channel = FileChannel.open(Paths.get(fileSpec),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public abstract void write(long pubTime, long serverTime, long receivedTime) throws IOException;
+
+    public static LatencyWriter csv(String fileSpec) throws IOException {
+        return new Csv(fileSpec);
+    }
+
+    public static LatencyWriter binary(String fileSpec, boolean memoryMapped, long nanosPerUnit) throws IOException {
+        return memoryMapped ? new MappedBinary(fileSpec, nanosPerUnit) : new Binary(fileSpec, nanosPerUnit);
+    }
+
+    protected static void writeFully(FileChannel channel, ByteBuffer bb) throws IOException {
+        bb.flip();
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+        bb.clear();
+    }
+
+    static class Csv extends LatencyWriter {
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final byte[] digits = new byte[20];
+
+        Csv(String fileSpec) throws IOException {
+            super(fileSpec);
+            buffer.put(Stats.LCSV_HEADER.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void write(long pubTime, long serverTime, long receivedTime) throws IOException {
+            if (buffer.remaining() < 6 * 21) {
+                writeFully(channel, buffer);
+            }
+            putLong(pubTime, ',');
+            putLong(serverTime, ',');
+            putLong(receivedTime, ',');
+            putLong(serverTime - pubTime, ',');
+            putLong(receivedTime - serverTime, ',');
+            putLong(receivedTime - pubTime, '\n');
+        }
+
+        private void putLong(long l, char terminator) {
+            if (l < 0) {
+                buffer.put((byte)'-');
+                l = -l;
+            }
+            int at = digits.length;
+            do {
+                digits[--at] = (byte)('0' + (l % 10));
+                l /= 10;
+            } while (l > 0);
+            buffer.put(digits, at, digits.length - at);
+            buffer.put((byte)terminator);
+        }
+
+        @Override
+        public void close() throws IOException {
+            writeFully(channel, buffer);
+            channel.close();
+        }
+    }
+
+    static class Binary extends LatencyWriter {
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Binary(String fileSpec, long nanosPerUnit) throws IOException {
+            super(fileSpec);
+            buffer.put(BINARY_MAGIC).putLong(nanosPerUnit);
+        }
+
+        @Override
+        public void write(long pubTime, long serverTime, long receivedTime) throws IOException {
+            if (buffer.remaining() < BINARY_RECORD_SIZE) {
+                writeFully(channel, buffer);
+            }
+            buffer.putLong(pubTime).putLong(serverTime).putLong(receivedTime);
+        }
+
+        @Override
+        public void close() throws IOException {
+            writeFully(channel, buffer);
+            channel.close();
+        }
+    }
+
+    static class MappedBinary extends LatencyWriter {
+        private MappedByteBuffer region;
+        private long regionStart;
+
+        MappedBinary(String fileSpec, long nanosPerUnit) throws IOException {
+            super(fileSpec);
+            mapRegion(0);
+            region.put(BINARY_MAGIC).putLong(nanosPerUnit);
+        }
+
+        private void mapRegion(long start) throws IOException {
+            if (region != null) {
+                region.force();
+            }
+            regionStart = start;
+            region = channel.map(FileChannel.MapMode.READ_WRITE, start, MAP_REGION_SIZE);
+        }
+
+        @Override
+        public void write(long pubTime, long serverTime, long receivedTime) throws IOException {
+            if (region.remaining() < BINARY_RECORD_SIZE) {
+                mapRegion(regionStart + region.position());
+            }
+            region.putLong(pubTime).putLong(serverTime).putLong(receivedTime);
+        }
+
+        @Override
+        public void close() throws IOException {
+            long size = regionStart + region.position();
+            region.force();
+            region = null;
+            channel.truncate(size);
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves the stats of the running JsMulti in the OpenMetrics text format at /metrics,
+ * for Prometheus to scrape during long runs. Counters are for the life of the process,
+ * the completed runs plus the current one, so they only go up across runs and scenario phases.
+ * The stats are read when scraped, from the server thread and without locking,
+ * so the publishing and consuming threads do no extra work. A scrape can be off
+ * by the few messages counted while it was being made.
+ * One server per port for the life of the process, its thread is a daemon.
+ */
+public class MetricsServer {
+
+    public static final String PATH = "/metrics";
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    // the upper bounds of the exported latency buckets, in seconds
+    public static final double[] BUCKET_SECONDS = {
+        0.00001, 0.000025, 0.00005,
+        0.0001, 0.00025, 0.0005,
+        0.001, 0.0025, 0.005,
+        0.01, 0.025, 0.05,
+        0.1, 0.25, 0.5,
+        1, 2.5, 5, 10};
+
+    private static final Map<Integer, MetricsServer> SERVERS = new HashMap<>();
+
+    private final HttpServer server;
+    private final Map<String, Stats> completed = new TreeMap<>();
+    private String currentAction;
+    private String currentContextId;
+    private List<Stats> current;
+    private long currentStartNanos;
+
+    /**
+     * The server for the port, started the first time it is asked for
+     * @param port the port, 0 for any free port, each call with 0 starts a new server
+     * @return the server
+     * @throws IOException if the server cannot be started
+     */
+    public static synchronized MetricsServer getInstance(int port) throws IOException {
+        MetricsServer ms = SERVERS.get(port);
+        if (ms == null) {
+            ms = new MetricsServer(port);
+            if (port != 0) {
+                SERVERS.put(port, ms);
+            }
+        }
+        return ms;
+    }
+
+    private MetricsServer(int port) throws IOException {
+        // the server's dispatcher thread is a daemon only if the thread that makes it is,
+        // so it is made on a daemon thread and does not keep the process alive after the run
+        AtomicReference<HttpServer> created = new AtomicReference<>();
+        AtomicReference<IOException> failed = new AtomicReference<>();
+        Thread starter = new Thread(() -> {
+            try {
+                HttpServer hs = HttpServer.create(new InetSocketAddress(port), 0);
+                hs.createContext(PATH, this::handle);
+                hs.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "metrics-server");
+                    t.setDaemon(true);
+                    return t;
+                }));
+                hs.start();
+                created.set(hs);
+            }
+            catch (IOException e) {
+                failed.set(e);
+            }
+        });
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failed.get() != null) {
+            throw failed.get();
+        }
+        if (created.get() == null) {
+            throw new IOException("Metrics server did not start on port " + port);
+        }
+        server = created.get();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public synchronized void runStarted(String contextId, String action, List<Stats> statsList) {
+        currentContextId = contextId;
+        currentAction = action;
+        current = new ArrayList<>(statsList);
+        currentStartNanos = System.nanoTime();
+    }
+
+    public synchronized void runFinished(List<Stats> statsList) {
+        if (current == null) {
+            return;
+        }
+        Stats total = completed.computeIfAbsent(currentAction, k -> new Stats());
+        for (Stats s : statsList) {
+            Stats.totalOne(s, total);
+        }
+        current = null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * The metrics as OpenMetrics text
+     * @return the text
+     */
+    public synchronized String scrape() {
+        Map<String, Stats> totals = new TreeMap<>();
+        for (Map.Entry<String, Stats> entry : completed.entrySet()) {
+            Stats.totalOne(entry.getValue(), totals.computeIfAbsent(entry.getKey(), k -> new Stats()));
+        }
+        Stats run = null;
+        if (current != null) {
+            run = Stats.total(current);
+            Stats.totalOne(run, totals.computeIfAbsent(currentAction, k -> new Stats()));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        family(sb, "jsmulti_messages", "counter", "Messages published or received.");
+        for (Map.Entry<String, Stats> e : totals.entrySet()) {
+            sample(sb, "jsmulti_messages_total", action(e.getKey()), e.getValue().getMessageCount());
+        }
+        family(sb, "jsmulti_bytes", "counter", "Payload bytes published or received.");
+        for (Map.Entry<String, Stats> e : totals.entrySet()) {
+            sample(sb, "jsmulti_bytes_total", action(e.getKey()), e.getValue().getBytes());
+        }
+        family(sb, "jsmulti_request_failures", "counter", "Requests without a reply.");
+        for (Map.Entry<String, Stats> e : totals.entrySet()) {
+            sample(sb, "jsmulti_request_failures_total", action(e.getKey()) + ",reason=\"timeout\"", e.getValue().getRequestTimeouts());
+            sample(sb, "jsmulti_request_failures_total", action(e.getKey()) + ",reason=\"no_responders\"", e.getValue().getRequestNoResponders());
+        }
+        family(sb, "jsmulti_kv_cas_conflicts", "counter", "Key value compare and set updates rejected for a wrong last revision.");
+        for (Map.Entry<String, Stats> e : totals.entrySet()) {
+            sample(sb, "jsmulti_kv_cas_conflicts_total", action(e.getKey()), e.getValue().getCasConflicts());
+        }
+        family(sb, "jsmulti_latency_dropped", "counter", "Latency samples dropped because the latency ring was full.");
+        for (Map.Entry<String, Stats> e : totals.entrySet()) {
+            sample(sb, "jsmulti_latency_dropped_total", action(e.getKey()), e.getValue().getLatencyDropped());
+        }
+
+        if (run != null) {
+            double seconds = (System.nanoTime() - currentStartNanos) / Stats.NANOS_PER_SECOND;
+            String labels = action(currentAction) + ",context=\"" + escape(currentContextId) + "\"";
+            family(sb, "jsmulti_run_elapsed_seconds", "gauge", "Time since the current run started.");
+            sample(sb, "jsmulti_run_elapsed_seconds", labels, seconds);
+            family(sb, "jsmulti_run_messages_per_second", "gauge", "Average message rate of the current run.");
+            sample(sb, "jsmulti_run_messages_per_second", labels, seconds > 0 ? run.getMessageCount() / seconds : 0);
+            family(sb, "jsmulti_run_bytes_per_second", "gauge", "Average byte rate of the current run.");
+            sample(sb, "jsmulti_run_bytes_per_second", labels, seconds > 0 ? run.getBytes() / seconds : 0);
+        }
+
+        family(sb, "jsmulti_op_duration_seconds", "histogram", "Duration of the individually timed operations.");
+        for (Map.Entry<String, Stats> e : totals.entrySet()) {
+            for (Stats.Op op : Stats.Op.values()) {
+                Histogram h = e.getValue().getOpHistogram(op);
+                if (h.getCount() > 0) {
+                    histogram(sb, "jsmulti_op_duration_seconds", action(e.getKey()) + ",op=\"" + op.name().toLowerCase() + "\"", h);
+                }
+            }
+        }
+        family(sb, "jsmulti_message_latency_seconds", "histogram", "Publish to consumer received latency of latency messages.");
+        for (Map.Entry<String, Stats> e : totals.entrySet()) {
+            Histogram h = e.getValue().getFullHistogram();
+            if (h.getCount() > 0) {
+                histogram(sb, "jsmulti_message_latency_seconds", action(e.getKey()), h);
+            }
+        }
+
+        ProfileStats p = new ProfileStats(currentContextId, currentAction);
+        gauge(sb, "jsmulti_jvm_heap_used_bytes", "Heap used.", p.heapUsed);
+        gauge(sb, "jsmulti_jvm_heap_committed_bytes", "Heap committed.", p.heapCommitted);
+        gauge(sb, "jsmulti_jvm_heap_max_bytes", "Heap max.", p.heapMax);
+        gauge(sb, "jsmulti_jvm_nonheap_used_bytes", "Non heap used.", p.nonHeapUsed);
+        gauge(sb, "jsmulti_jvm_nonheap_committed_bytes", "Non heap committed.", p.nonHeapCommitted);
+        gauge(sb, "jsmulti_jvm_threads", "Live platform threads.", p.threadCount);
+        gauge(sb, "jsmulti_jvm_deadlocked_threads", "Deadlocked threads.", p.deadThreads.size());
+        family(sb, "jsmulti_jvm_gc_collections", "counter", "Garbage collections.");
+        sample(sb, "jsmulti_jvm_gc_collections_total", null, p.gcCount);
+        family(sb, "jsmulti_jvm_gc_seconds", "counter", "seconds", "Time spent in garbage collection.");
+        sample(sb, "jsmulti_jvm_gc_seconds_total", null, p.gcMillis / Stats.MILLIS_PER_SECOND);
+
+        return sb.append("# EOF\n").toString();
+    }
+
+    private static String action(String action) {
+        return "action=\"" + escape(action) + "\"";
+    }
+
+    private static String escape(String s) {
+        return s == null ? "" : s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void family(StringBuilder sb, String name, String type, String help) {
+        family(sb, name, type, null, help);
+    }
+
+    // the unit, when there is one, must be the suffix of the family name
+    private static void family(StringBuilder sb, String name, String type, String unit, String help) {
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        if (unit != null) {
+            sb.append("# UNIT ").append(name).append(' ').append(unit).append('\n');
+        }
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, Number value) {
+        sb.append(name);
+        if (labels != null) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        family(sb, name, "gauge", help);
+        sample(sb, name, null, value);
+    }
+
+    // the buckets are cumulative, read from the nanosecond histogram at each bound
+    private static void histogram(StringBuilder sb, String name, String labels, Histogram h) {
+        for (double bound : BUCKET_SECONDS) {
+            long count = Math.min(h.getCountAtOrBelow((long)(bound * Stats.NANOS_PER_SECOND)), h.getCount());
+            sample(sb, name + "_bucket", labels + ",le=\"" + bound + "\"", count);
+        }
+        sample(sb, name + "_bucket", labels + ",le=\"+Inf\"", h.getCount());
+        sample(sb, name + "_count", labels, h.getCount());
+        sample(sb, name + "_sum", labels, h.getSum() / Stats.NANOS_PER_SECOND);
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Streams for the object store actions. The object store reads the put stream one chunk at a time
+ * and publishes each chunk before reading the next, and writes the get stream once per chunk as each
+ * chunk arrives, so the time between the calls is the time for a chunk.
+ * Both are used on the thread that calls put or get, the same thread as the stats.
+ */
+public abstract class ObjectStreams {
+
+    /**
+     * A synthetic object of a given size, the content repeats the pattern.
+     * Records the time between chunk reads in the chunk histogram.
+     */
+    public static class Source extends InputStream {
+        private final Stats stats;
+        private final byte[] pattern;
+        private final long size;
+        private long position;
+        private long lastRead;
+
+        public Source(Stats stats, byte[] pattern, long size) {
+            this.stats = stats;
+            this.pattern = pattern.length == 0 ? new byte[1] : pattern;
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            if (position >= size) {
+                return -1;
+            }
+            return pattern[(int)(position++ % pattern.length)] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            long now = System.nanoTime();
+            if (lastRead != 0) {
+                stats.recordOp(Stats.Op.OS_CHUNK, now - lastRead);
+            }
+            lastRead = now;
+            if (position >= size) {
+                return -1;
+            }
+            int n = (int)Math.min(len, size - position);
+            int at = (int)(position % pattern.length);
+            int copied = 0;
+            while (copied < n) {
+                int count = Math.min(n - copied, pattern.length - at);
+                System.arraycopy(pattern, at, b, off + copied, count);
+                copied += count;
+                at = 0;
+            }
+            position += n;
+            return n;
+        }
+    }
+
+    /**
+     * Discards what is written, recording the time to the first chunk in the first byte histogram
+     * and the time between chunks after that in the chunk histogram.
+     */
+    public static class Sink extends OutputStream {
+        private final Stats stats;
+        private final long start;
+        private long lastWrite;
+        private long bytes;
+
+        public Sink(Stats stats) {
+            this.stats = stats;
+            start = System.nanoTime();
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void write(int b) {
+            write(null, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            long now = System.nanoTime();
+            if (lastWrite == 0) {
+                stats.recordOp(Stats.Op.OS_FIRST_BYTE, now - start);
+            }
+            else {
+                stats.recordOp(Stats.Op.OS_CHUNK, now - lastWrite);
+            }
+            lastWrite = now;
+            bytes += len;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop pacing at a constant rate. Every call to {@link #acquire()} takes the next slot
+ * of a fixed schedule and waits until that slot's intended time. The schedule does not slip
+ * when a send is slow, so callers that measure from the intended time are corrected for
+ * coordinated omission. One instance can be shared by many threads for a global rate.
+ * A ramp changes the rate linearly from one rate to another over a number of messages.
+ */
+public class Pacer {
+    // park until this close to the intended time, then spin
+    public static final long SPIN_NANOS = 50_000;
+
+    private final long intervalNanos;
+
+    // ramp, rates are per nanosecond
+    private final boolean ramp;
+    private final double fromRate;
+    private final double rampAcceleration;
+    private final long rampMessages;
+    private final double rampNanos;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean started;
+    private long startNanos;
+    private long startEpochMillis;
+
+    public Pacer(long perSecond) {
+        intervalNanos = Math.max(1, 1_000_000_000L / perSecond);
+        ramp = false;
+        fromRate = 0;
+        rampAcceleration = 0;
+        rampMessages = 0;
+        rampNanos = 0;
+    }
+
+    /**
+     * A pacer that ramps linearly
+     * @param fromPerSecond the rate at the start
+     * @param toPerSecond the rate at the end of the ramp, and after it
+     * @param messages the number of messages in the ramp
+     */
+    public Pacer(long fromPerSecond, long toPerSecond, long messages) {
+        intervalNanos = Math.max(1, 1_000_000_000L / toPerSecond);
+        ramp = true;
+        fromRate = fromPerSecond / 1e9;
+        double toRate = toPerSecond / 1e9;
+        rampMessages = messages;
+        rampNanos = messages / ((fromRate + toRate) / 2);
+        rampAcceleration = (toRate - fromRate) / rampNanos;
+    }
+
+    private void startMaybe() {
+        if (!started) {
+            synchronized (this) {
+                if (!started) {
+                    startEpochMillis = System.currentTimeMillis();
+                    startNanos = System.nanoTime();
+                    started = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Take the next slot in the schedule and wait for it
+     * @return the intended start time of the slot, in System.nanoTime() terms
+     */
+    public long acquire() {
+        startMaybe();
+        long intended = startNanos + getSlotNanos(sequence.getAndIncrement());
+        long remaining = intended - System.nanoTime();
+        while (remaining > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            }
+            remaining = intended - System.nanoTime();
+        }
+        return intended;
+    }
+
+    /**
+     * The intended time of a slot as an offset from the start of the schedule.
+     * In a ramp the messages sent by time t are from * t + acceleration * t^2 / 2, solved for t.
+     * @param slot the slot, 0 is the first acquire
+     * @return the offset in nanoseconds
+     */
+    public long getSlotNanos(long slot) {
+        if (!ramp) {
+            return slot * intervalNanos;
+        }
+        if (slot >= rampMessages) {
+            return (long)rampNanos + (slot - rampMessages) * intervalNanos;
+        }
+        if (rampAcceleration == 0) {
+            return (long)(slot / fromRate);
+        }
+        return (long)((Math.sqrt(fromRate * fromRate + 2 * rampAcceleration * slot) - fromRate) / rampAcceleration);
+    }
+
+    /**
+     * Convert an intended time returned from acquire to wall clock epoch millis
+     * @param intended the intended time
+     * @return the epoch millis
+     */
+    public long toEpochMillis(long intended) {
+        return startEpochMillis + (intended - startNanos) / 1_000_000;
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+}
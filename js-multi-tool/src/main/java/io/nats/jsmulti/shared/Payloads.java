@@ -0,0 +1,197 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The payloads to publish, generated once before the run.
+ * Each publishing thread takes its own {@link Cursor} so rotating through
+ * the variants needs no lock. The content is made with a fixed seed,
+ * so every run publishes the same bytes.
+ */
+public class Payloads {
+
+    public enum Type {
+        ZEROS("zeros"),
+        RANDOM("random"),
+        TEXT("text"),
+        JSON("json"),
+        FILE("file");
+
+        private final String label;
+
+        Type(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static Type getInstance(String text) {
+            for (Type t : Type.values()) {
+                if (t.label.equalsIgnoreCase(text)) {
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static final long SEED = 0x6E617473L;
+
+    private static final String[] WORDS = ("the quick brown fox jumps over lazy dog stream subject consumer "
+        + "message publish subscribe server cluster leaf node account user order tenant account payment "
+        + "shipped pending created updated deleted active inactive region east west north south primary "
+        + "replica leader follower ack nak term fetch batch bytes limit time data value key store object").split(" ");
+
+    private final byte[][] payloads;
+    private final AtomicInteger nextStart = new AtomicInteger();
+
+    public Payloads(Type type, int size, int variants, String fileSpec) throws IOException {
+        Random r = new Random(SEED);
+        byte[] file = type == Type.FILE ? Files.readAllBytes(Paths.get(fileSpec)) : null;
+        if (file != null && file.length == 0) {
+            throw new IOException("Payload file is empty: " + fileSpec);
+        }
+
+        payloads = new byte[variants][];
+        int lower = size - (size / 10);
+        int upper = size + (size / 10);
+        for (int x = 0; x < variants; x++) {
+            int vSize = variants == 1 || upper <= lower ? size : lower + r.nextInt(upper - lower);
+            switch (type) {
+                case RANDOM:
+                    payloads[x] = new byte[vSize];
+                    r.nextBytes(payloads[x]);
+                    break;
+                case TEXT:
+                    payloads[x] = text(r, vSize);
+                    break;
+                case JSON:
+                    payloads[x] = json(r, vSize);
+                    break;
+                case FILE:
+                    payloads[x] = fromFile(file, (int)((long)x * file.length / variants), vSize);
+                    break;
+                default:
+                    payloads[x] = new byte[vSize];
+            }
+        }
+    }
+
+    public int getVariants() {
+        return payloads.length;
+    }
+
+    public byte[] get(int ix) {
+        return payloads[ix];
+    }
+
+    /**
+     * A cursor for one thread. Cursors start at different variants,
+     * so threads are not publishing the same payload at the same time.
+     * @return the cursor
+     */
+    public Cursor cursor() {
+        return new Cursor(Math.floorMod(nextStart.getAndIncrement(), payloads.length));
+    }
+
+    /**
+     * Rotates through the variants. Not thread safe, each thread has its own.
+     */
+    public class Cursor {
+        private int ix;
+
+        private Cursor(int start) {
+            ix = start;
+        }
+
+        public byte[] next() {
+            byte[] payload = payloads[ix];
+            if (++ix == payloads.length) {
+                ix = 0;
+            }
+            return payload;
+        }
+    }
+
+    // words separated by spaces, compresses about like ordinary text
+    private static byte[] text(Random r, int size) {
+        StringBuilder sb = new StringBuilder(size + 16);
+        while (sb.length() < size) {
+            sb.append(WORDS[r.nextInt(WORDS.length)]).append(' ');
+        }
+        return sb.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // a json object of typical fields, padded with a text field to be exactly the size
+    private static byte[] json(Random r, int size) {
+        String padStart = "\"pad\":\"";
+        String padEnd = "\"}";
+        StringBuilder sb = new StringBuilder(size + 64);
+        sb.append('{');
+        int field = 0;
+        while (true) {
+            String next = jsonField(r, field++);
+            if (sb.length() + next.length() + padStart.length() + padEnd.length() > size) {
+                break;
+            }
+            sb.append(next);
+        }
+        if (sb.length() + padStart.length() + padEnd.length() > size) {
+            return text(r, size); // too small for json
+        }
+        sb.append(padStart);
+        int padLen = size - sb.length() - padEnd.length();
+        sb.append(new String(text(r, padLen), StandardCharsets.US_ASCII));
+        sb.append(padEnd);
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String jsonField(Random r, int field) {
+        switch (field % 5) {
+            case 0:  return "\"id" + field + "\":" + r.nextInt(1_000_000) + ",";
+            case 1:  return "\"name" + field + "\":\"" + WORDS[r.nextInt(WORDS.length)] + "\",";
+            case 2:  return "\"active" + field + "\":" + r.nextBoolean() + ",";
+            case 3:  return "\"amount" + field + "\":" + r.nextInt(100_000) / 100.0 + ",";
+            default: return "\"tags" + field + "\":[\"" + WORDS[r.nextInt(WORDS.length)] + "\",\"" + WORDS[r.nextInt(WORDS.length)] + "\"],";
+        }
+    }
+
+    // size bytes of the file starting at the offset, wrapping to the start of the file
+    private static byte[] fromFile(byte[] file, int offset, int size) {
+        byte[] payload = new byte[size];
+        int at = 0;
+        int from = offset;
+        while (at < size) {
+            int len = Math.min(size - at, file.length - from);
+            System.arraycopy(file, from, payload, at, len);
+            at += len;
+            from = 0;
+        }
+        return payload;
+    }
+}
@@ -0,0 +1,212 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the JVM while a run is going, so the report can show what the client costs per message.
+ * For each worker thread, the cpu time and the bytes allocated, sampled periodically and taken exactly
+ * by the thread itself when it finishes. For the whole JVM, the gc pauses from the collectors' notifications
+ * and the peak heap used. At the end of the run the numbers are set on each thread's {@link Stats}.
+ * Per thread numbers need platform threads and a JVM with the com.sun.management extensions,
+ * the virtual thread runs only get the gc numbers.
+ */
+public class ProfileSampler {
+
+    public static final long DEFAULT_SAMPLE_MILLIS = 1000;
+
+    private final long sampleMillis;
+    private final ThreadMXBean threadBean;
+    private final com.sun.management.ThreadMXBean sunThreadBean;
+    private final Set<String> heapPools = new HashSet<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener gcListener = this::gcNotification;
+
+    private ScheduledExecutorService scheduler;
+    private List<Stats> statsList;
+    private long[] threadIds;
+    private long[] cpuNanos;
+    private long[] allocatedBytes;
+    private boolean[] finished;
+
+    private long gcCount;
+    private long gcPauseNanos;
+    private long gcMaxPauseNanos;
+    private long heapPeak;
+
+    public ProfileSampler(long sampleMillis) {
+        this.sampleMillis = sampleMillis < 1 ? DEFAULT_SAMPLE_MILLIS : sampleMillis;
+        threadBean = ManagementFactory.getThreadMXBean();
+        sunThreadBean = threadBean instanceof com.sun.management.ThreadMXBean
+            ? (com.sun.management.ThreadMXBean)threadBean : null;
+        if (threadBean.isThreadCpuTimeSupported() && !threadBean.isThreadCpuTimeEnabled()) {
+            threadBean.setThreadCpuTimeEnabled(true);
+        }
+        if (sunThreadBean != null && sunThreadBean.isThreadAllocatedMemorySupported() && !sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+            sunThreadBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+    }
+
+    /**
+     * Start sampling, before the threads are started
+     * @param threads the worker threads, one per stats, or null when there are no per thread numbers
+     * @param statsList the stats of the run
+     */
+    public synchronized void start(List<Thread> threads, List<Stats> statsList) {
+        this.statsList = new ArrayList<>(statsList);
+        int size = threads != null && threads.size() == statsList.size() ? threads.size() : 0;
+        threadIds = new long[size];
+        cpuNanos = new long[size];
+        allocatedBytes = new long[size];
+        finished = new boolean[size];
+        for (int x = 0; x < size; x++) {
+            threadIds[x] = threads.get(x).getId();
+            cpuNanos[x] = -1;
+            allocatedBytes[x] = -1;
+        }
+
+        heapPeak = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gcBean instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter)gcBean;
+                emitter.addNotificationListener(gcListener, null, null);
+                emitters.add(emitter);
+            }
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "profile-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, sampleMillis, sampleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called by a worker thread as it finishes, so its numbers are exact instead of as of the last sample
+     */
+    public synchronized void threadFinished() {
+        long id = Thread.currentThread().getId();
+        for (int x = 0; x < threadIds.length; x++) {
+            if (threadIds[x] == id) {
+                keep(x, threadBean.getCurrentThreadCpuTime(), sunThreadBean == null ? -1 : sunThreadBean.getThreadAllocatedBytes(id));
+                finished[x] = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stop sampling and set the numbers on the stats
+     */
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            scheduler.awaitTermination(sampleMillis * 2, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(gcListener);
+            }
+            catch (Exception ignore) {}
+        }
+        emitters.clear();
+
+        synchronized (this) {
+            scheduler = null;
+            sample();
+            for (int x = 0; x < statsList.size(); x++) {
+                long cpu = x < threadIds.length ? cpuNanos[x] : -1;
+                long allocated = x < threadIds.length ? allocatedBytes[x] : -1;
+                statsList.get(x).setProfile(cpu, allocated, gcCount, gcPauseNanos, gcMaxPauseNanos, heapPeak);
+            }
+        }
+    }
+
+    private synchronized void sample() {
+        for (int x = 0; x < threadIds.length; x++) {
+            if (!finished[x]) {
+                keep(x, threadBean.getThreadCpuTime(threadIds[x]),
+                    sunThreadBean == null ? -1 : sunThreadBean.getThreadAllocatedBytes(threadIds[x]));
+            }
+        }
+        heapPeak = Math.max(heapPeak, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+    }
+
+    // a thread that is not started or is gone reads -1, so the last good value is kept
+    private void keep(int x, long cpu, long allocated) {
+        if (cpu >= 0) {
+            cpuNanos[x] = cpu;
+        }
+        if (allocated >= 0) {
+            allocatedBytes[x] = allocated;
+        }
+    }
+
+    private void gcNotification(Notification n, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(n.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData)n.getUserData());
+        // the concurrent collectors report their cycles on their own bean, those are not pauses
+        if (info.getGcName().endsWith("Cycles")) {
+            return;
+        }
+        long pause = info.getGcInfo().getDuration() * Stats.NANOS_PER_MILLI_L;
+        long before = 0;
+        for (Map.Entry<String, MemoryUsage> entry : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+            if (heapPools.contains(entry.getKey())) {
+                before += entry.getValue().getUsed();
+            }
+        }
+        synchronized (this) {
+            gcCount++;
+            gcPauseNanos += pause;
+            gcMaxPauseNanos = Math.max(gcMaxPauseNanos, pause);
+            heapPeak = Math.max(heapPeak, before);
+        }
+    }
+}
@@ -44,6 +44,8 @@ public class ProfileStats {
     public final long nonHeapCommitted;
     public final long nonHeapMax;
     public int threadCount;
+    public final long gcCount;
+    public final long gcMillis;
     public final List<String> deadThreads;
     public final List<String> liveThreads;
 
@@ -75,6 +77,15 @@ public class ProfileStats {
         nonHeapCommitted = usage.getCommitted();
         nonHeapMax = usage.getMax();
 
+        long _gcCount = 0;
+        long _gcMillis = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            _gcCount += Math.max(0, gcBean.getCollectionCount());
+            _gcMillis += Math.max(0, gcBean.getCollectionTime());
+        }
+        gcCount = _gcCount;
+        gcMillis = _gcMillis;
+
         threadCount = threadBean.getThreadCount();
         long[] deadThreadIds = threadBean.findDeadlockedThreads();
         if (deadThreadIds == null) {
@@ -111,6 +122,8 @@ public class ProfileStats {
         nonHeapCommitted = JsonValueUtils.readLong(jv, "nonHeapCommitted", 0);
         nonHeapMax = JsonValueUtils.readLong(jv, "nonHeapMax", 0);
         threadCount = JsonValueUtils.readInteger(jv, "threadCount", 0);
+        gcCount = JsonValueUtils.readLong(jv, "gcCount", 0);
+        gcMillis = JsonValueUtils.readLong(jv, "gcMillis", 0);
         deadThreads = JsonValueUtils.readStringList(jv, "deadThreads");
         liveThreads = JsonValueUtils.readStringList(jv, "liveThreads");
     }
@@ -141,6 +154,8 @@ public class ProfileStats {
             .put("nonHeapCommitted", nonHeapCommitted)
             .put("nonHeapMax", nonHeapMax)
             .put("threadCount", threadCount)
+            .put("gcCount", gcCount)
+            .put("gcMillis", gcMillis)
             .put("deadThreads", deadBuilder.toJsonValue())
             .put("liveThreads", liveBuilder.toJsonValue())
             .toJsonValue().map;
@@ -174,6 +189,8 @@ public class ProfileStats {
             && nonHeapCommitted == that.nonHeapCommitted
             && nonHeapMax == that.nonHeapMax
             && threadCount == that.threadCount
+            && gcCount == that.gcCount
+            && gcMillis == that.gcMillis
             && id.equals(that.id)
             && equivalent(deadThreads, that.deadThreads)
             && equivalent(liveThreads, that.liveThreads);
@@ -195,6 +212,8 @@ public class ProfileStats {
         result = 31 * result + Long.hashCode(nonHeapCommitted);
         result = 31 * result + Long.hashCode(nonHeapMax);
         result = 31 * result + threadCount;
+        result = 31 * result + Long.hashCode(gcCount);
+        result = 31 * result + Long.hashCode(gcMillis);
         result = 31 * result + deadThreads.hashCode();
         result = 31 * result + liveThreads.hashCode();
         return result;
@@ -218,9 +237,9 @@ public class ProfileStats {
         return true;
     }
 
-    public static final String REPORT_SEP_LINE = "| ------------------- | ---------- | ---------- | ---------- | ---------- | ---------- | ---------- | ---------- | ---------- | ------- | ------- |";
-    public static final String REPORT_LINE_HEADER = "| %-19s |        max |   heap max |  allocated |       free |  heap used |  heap cmtd |   non used |   non cmtd |   alive |    dead |\n";
-    public static final String REPORT_LINE_FORMAT = "| %-19s | %10s | %10s | %10s | %10s | %10s | %10s | %10s | %10s | %7s | %7s |\n";
+    public static final String REPORT_SEP_LINE = "| ------------------- | ---------- | ---------- | ---------- | ---------- | ---------- | ---------- | ---------- | ---------- | ------- | ------- | -------- | ---------- |";
+    public static final String REPORT_LINE_HEADER = "| %-19s |        max |   heap max |  allocated |       free |  heap used |  heap cmtd |   non used |   non cmtd |   alive |    dead |       gc |      gc ms |\n";
+    public static final String REPORT_LINE_FORMAT = "| %-19s | %10s | %10s | %10s | %10s | %10s | %10s | %10s | %10s | %7s | %7s | %8s | %10s |\n";
 
     public static void report(List<ProfileStats> list) {
         for (int x = 0; x < list.size(); x++) {
@@ -246,7 +265,9 @@ public class ProfileStats {
             Stats.humanBytes(p.nonHeapUsed),
             Stats.humanBytes(p.nonHeapCommitted),
             p.liveThreads.size() + "/" + p.threadCount,
-            p.deadThreads.size() + "/" + p.threadCount);
+            p.deadThreads.size() + "/" + p.threadCount,
+            Stats.format(p.gcCount),
+            Stats.format(p.gcMillis));
 
         if (footer) {
             out.println(REPORT_SEP_LINE);
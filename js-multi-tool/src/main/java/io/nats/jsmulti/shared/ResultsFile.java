@@ -0,0 +1,96 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import io.nats.client.support.JsonParser;
+import io.nats.client.support.JsonValue;
+import io.nats.client.support.JsonValueUtils;
+import io.nats.jsmulti.settings.Context;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The saved results of runs, one json line per run with the stats of every thread, histograms included.
+ * Runs append to the file, so the repetitions of a run can be kept together and compared with
+ * another set of repetitions by {@link io.nats.jsmulti.Compare}.
+ */
+public abstract class ResultsFile {
+
+    /**
+     * Append a run
+     * @param fileSpec the file
+     * @param ctx the context of the run
+     * @param statsList the stats of the run
+     * @throws IOException if the file cannot be written
+     */
+    public static void append(String fileSpec, Context ctx, List<Stats> statsList) throws IOException {
+        JsonValueUtils.ArrayBuilder ab = JsonValueUtils.arrayBuilder();
+        for (Stats stats : statsList) {
+            ab.add(new JsonValue(stats.toJsonValueMap()));
+        }
+        String line = JsonValueUtils.mapBuilder()
+            .put("time", System.currentTimeMillis())
+            .put("context", ctx.id)
+            .put("action", ctx.action.getLabel())
+            .put("stats", ab.toJsonValue())
+            .toJsonValue().toJson();
+        synchronized (ResultsFile.class) {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileSpec, true))) {
+                writer.write(line);
+                writer.write("\n");
+            }
+        }
+    }
+
+    /**
+     * Read every run in the file
+     * @param fileSpec the file
+     * @return the stats of each run, in the order they were saved
+     * @throws IOException if the file cannot be read or a line is not a run
+     */
+    public static List<List<Stats>> read(String fileSpec) throws IOException {
+        List<List<Stats>> runs = new ArrayList<>();
+        int lineNo = 0;
+        for (String line : Files.readAllLines(Paths.get(fileSpec), StandardCharsets.UTF_8)) {
+            lineNo++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            JsonValue jv;
+            try {
+                jv = JsonParser.parse(line);
+            }
+            catch (Exception e) {
+                throw new IOException("Invalid results line " + lineNo + " in " + fileSpec + ": " + e.getMessage());
+            }
+            JsonValue jvStats = JsonValueUtils.readValue(jv, "stats");
+            if (jvStats == null || jvStats.array == null || jvStats.array.isEmpty()) {
+                throw new IOException("No stats on results line " + lineNo + " in " + fileSpec);
+            }
+            List<Stats> run = new ArrayList<>();
+            for (JsonValue s : jvStats.array) {
+                run.add(new Stats(s));
+            }
+            runs.add(run);
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,246 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import io.nats.client.Message;
+import io.nats.jsmulti.settings.Context;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stats for a group of clients running at the same time, i.e. virtual threads sharing a connection.
+ * Counting is done under a lock and the start time is kept per thread,
+ * so there is one Stats per group instead of one per client.
+ * The elapsed is the sum of every client's elapsed until {@link #finish()}
+ * divides it by the number of clients.
+ */
+public class SharedStats extends Stats {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ThreadLocal<long[]> starts = ThreadLocal.withInitial(() -> new long[1]);
+    private final int clients;
+    private boolean finished;
+
+    public SharedStats(Context ctx, int clients) {
+        super(ctx);
+        this.clients = clients;
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    /**
+     * Call once all the clients are done
+     */
+    public void finish() {
+        lock.lock();
+        try {
+            if (!finished) {
+                finished = true;
+                divideElapsed(clients);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void start() {
+        starts.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    protected long startNanos() {
+        return starts.get()[0];
+    }
+
+    @Override
+    public void setException(Exception e) {
+        lock.lock();
+        try {
+            super.setException(e);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void stop() {
+        lock.lock();
+        try {
+            super.stop();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void stop(Op op) {
+        lock.lock();
+        try {
+            super.stop(op);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void recordOp(Op op, long opElapsed) {
+        lock.lock();
+        try {
+            super.recordOp(op, opElapsed);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void recordOps(Op op, Histogram h) {
+        lock.lock();
+        try {
+            super.recordOps(op, h);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void countRequestFailures(long timeouts, long noResponders) {
+        lock.lock();
+        try {
+            super.countRequestFailures(timeouts, noResponders);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void countCasConflict() {
+        lock.lock();
+        try {
+            super.countCasConflict();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void countAcks(long acks, long ackedMessages, long ackElapsed) {
+        lock.lock();
+        try {
+            super.countAcks(acks, ackedMessages, ackElapsed);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void manualElapsed(long mElapsed) {
+        lock.lock();
+        try {
+            super.manualElapsed(mElapsed);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void manualElapsed(long mElapsed, long mMessageCount) {
+        lock.lock();
+        try {
+            super.manualElapsed(mElapsed, mMessageCount);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void manualElapsed(long mElapsed, long mMessageCount, long mBytes) {
+        lock.lock();
+        try {
+            super.manualElapsed(mElapsed, mMessageCount, mBytes);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void stopAndCount(long bytes) {
+        lock.lock();
+        try {
+            super.stopAndCount(bytes);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void stopAndCount(long bytes, long intended) {
+        lock.lock();
+        try {
+            super.stopAndCount(bytes, intended);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void stopAndCount(Op op, long bytes, long intended) {
+        lock.lock();
+        try {
+            super.stopAndCount(op, bytes, intended);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void count(Message m, long mReceived) {
+        // the latency ring has a single producer, the lock keeps it that way
+        lock.lock();
+        try {
+            super.count(m, mReceived);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void countBatch(List<Message> messages, long mReceived) {
+        lock.lock();
+        try {
+            super.countBatch(messages, mReceived);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
@@ -7,26 +7,58 @@ import io.nats.client.support.JsonValueUtils;
 import io.nats.jsmulti.settings.Action;
 import io.nats.jsmulti.settings.Context;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
 
+import static io.nats.jsmulti.shared.Utils.HDR_PUB_NANOS;
 import static io.nats.jsmulti.shared.Utils.HDR_PUB_TIME;
+import static io.nats.jsmulti.shared.Utils.HDR_PUB_UNCERTAINTY;
 import static io.nats.jsmulti.shared.Utils.makeId;
 
 public class Stats {
 
-    public static final int VERSION = 1;
+    /**
+     * The individual operations that are timed on their own, in addition to the running elapsed
+     */
+    public enum Op {
+        PUBLISH("Publish"),
+        ACK("Ack"),
+        ACK_LATENCY("Ack Latency"),
+        FETCH("Fetch"),
+        WINDOW("Window Blocked"),
+        REPLY("Request Reply"),
+        KV_PUT("KV Put"),
+        KV_GET("KV Get"),
+        KV_UPDATE("KV Update"),
+        KV_WATCH("KV Watch Delivery"),
+        OS_PUT("OS Put"),
+        OS_GET("OS Get"),
+        OS_FIRST_BYTE("OS Get First Byte"),
+        OS_CHUNK("OS Chunk");
+
+        private final String label;
+
+        Op(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public static final int VERSION = 2; // version 2 elapsed is in nanoseconds
 
     public static final double MILLIS_PER_SECOND = 1000;
     public static final double NANOS_PER_MILLI = 1000000;
+    public static final double NANOS_PER_SECOND = 1000000000;
+    public static final long NANOS_PER_MILLI_L = 1000000;
 
     public static final long HUMAN_BYTES_BASE = 1024;
     public static final String[] HUMAN_BYTES_UNITS = new String[] {"b", "kb", "mb", "gb", "tb", "pb", "eb"};
@@ -48,6 +80,29 @@ public class Stats {
     public static final String LM_REPORT_LINE_HEADER = "| Latency Message   | Publish to Server   | Server to Consumer  | Publish to Consumer |";
     public static final String LM_REPORT_LINE_FORMAT = "| %19s |  %15s ms |  %15s ms |  %15s ms |\n";
 
+    public static final String PCT_REPORT_SEP_LINE    = "| ------------------- | ------------ | ------------ | ------------ | ------------ | ------------ | ------------ | ------------ | ------------ |";
+    public static final String PCT_REPORT_LINE_HEADER = "| %-19s |        count |          min |          p50 |          p90 |          p99 |        p99.9 |       p99.99 |          max |\n";
+    public static final String PCT_REPORT_LINE_FORMAT = "| %-19s | %12s | %9s ms | %9s ms | %9s ms | %9s ms | %9s ms | %9s ms | %9s ms |\n";
+
+    public static final String LATENCY_DROPPED_FORMAT = "Latency samples dropped because the latency ring was full: %s of %s. Consider a larger -lrs.\n";
+
+    public static final String CLASS_REPORT_SEP_LINE    = "| ------------------- | ----------------- | ---------- | ---------------- |";
+    public static final String CLASS_REPORT_LINE_HEADER = "| %-19s |             count |    percent |            bytes |\n";
+    public static final String CLASS_REPORT_LINE_FORMAT = "| %-19s | %12s msgs | %8s %% | %16s |\n";
+
+    public static final String PROFILE_REPORT_SEP_LINE    = "| ------------------- | --------------- | ------------ | ------------ | ------------ |";
+    public static final String PROFILE_REPORT_LINE_HEADER = "| %-19s |        cpu time |   cpu ns/msg |    allocated |    bytes/msg |\n";
+    public static final String PROFILE_REPORT_LINE_FORMAT = "| %-19s | %12s ms | %12s | %12s | %12s |\n";
+    public static final String GC_FORMAT = "Garbage collection during the run: %s pauses, %s ms in total, %s ms max. Peak heap used %s.\n";
+
+    public static final String REQUEST_FAILED_FORMAT = "Requests without a reply: %s timed out, %s no responders.\n";
+    public static final String CAS_CONFLICT_FORMAT = "Compare and set conflicts: %s of %s updates.\n";
+    public static final String ACK_FORMAT = "Acks sent apart from receiving: %s acks for %s messages, %s ms sending, %s acks/sec.\n";
+    public static final String CLOCK_FORMAT = "Latency is corrected to the server clock, receiver clock +/- %s ms, publisher clocks +/- %s ms, one way latency +/- %s ms.\n";
+    public static final String WINDOW_BLOCKED_FORMAT = "Publishers were blocked on a full in flight window for %s ms in total.\n";
+
+    public static final long LATENCY_DRAIN_PARK_NANOS = 100_000;
+
     public static final String LCSV_HEADER = "Publish Time,Server Time,Received Time,Publish to Server,Server to Consumer,Publish to Consumer\n";
 
     // Misc
@@ -58,7 +113,7 @@ public class Stats {
 
     private String exceptionMessage;
 
-    // running numbers
+    // running numbers, elapsed is in nanoseconds
     private long elapsed = 0;
     private long bytes = 0;
     private long messageCount = 0;
@@ -67,9 +122,6 @@ public class Stats {
     private long messagePubToServerTimeElapsed = 0;
     private long messageServerToReceiverElapsed = 0;
     private long messageFullElapsed = 0;
-    private long messagePubToServerTimeElapsedForAverage = 0;
-    private long messageServerToReceiverElapsedForAverage = 0;
-    private long messageFullElapsedForAverage = 0;
     private long maxMessagePubToServerTimeElapsed = 0;
     private long maxMessageServerToReceiverElapsed = 0;
     private long maxMessageFullElapsed = 0;
@@ -77,12 +129,52 @@ public class Stats {
     private long minMessageServerToReceiverElapsed = Long.MAX_VALUE;
     private long minMessageFullElapsed = Long.MAX_VALUE;
 
+    // high resolution latency, the times are epoch nanos corrected to the server clock
+    // and these are how far the receiver and publisher corrections might be off, 0 if not known
+    private final boolean latencyHighRes;
+    private long clockUncertainty = 0;
+    private long pubClockUncertainty = 0;
+    private long latencyDropped = 0;
+    private long requestTimeouts = 0;
+    private long requestNoResponders = 0;
+    private long casConflicts = 0;
+
+    // acks sent by an ack sender, apart from the receive elapsed
+    private long acks = 0;
+    private long ackedMessages = 0;
+    private long ackElapsed = 0;
+
+    // profile, when sampled, cpu and allocated are for the thread, -1 when not known,
+    // gc and heap are for the whole jvm during the run, so totals take the max of those
+    private long cpuNanos = -1;
+    private long allocatedBytes = -1;
+    private long gcCount = 0;
+    private long gcPauseNanos = 0;
+    private long gcMaxPauseNanos = 0;
+    private long heapPeak = 0;
+
+    // received messages and bytes by subject class, when there is a subject template
+    private final long[] classMessages = new long[SubjectSpace.CLASS_LABELS.length];
+    private final long[] classBytes = new long[SubjectSpace.CLASS_LABELS.length];
+
+    // histograms, all values are recorded in nanoseconds
+    private final Histogram pubToServerHistogram = new Histogram();
+    private final Histogram serverToReceiverHistogram = new Histogram();
+    private final Histogram fullHistogram = new Histogram();
+    private final Histogram[] opHistograms = newOpHistograms();
+
     // Time keeping
-    private long milliNow;
+    private long nanoNow;
 
     private final Context ctx;
-    private final FileOutputStream lout;
-    private final ExecutorService countService = Executors.newSingleThreadExecutor();
+    private final SubjectSpace subjectSpace;
+    private LatencyWriter latencyWriter;
+
+    // latency pipeline, the ring and drain thread are only created once a latency message is counted
+    private final LatencyRing.Handler latencyHandler = this::recordLatency;
+    private LatencyRing latencyRing;
+    private Thread latencyDrainThread;
+    private volatile boolean latencyShutdown;
 
     public Stats() {
         version = VERSION;
@@ -90,50 +182,106 @@ public class Stats {
         action = "";
         key = "";
         ctx = null;
-        lout = null;
+        subjectSpace = null;
+        latencyWriter = null;
+        latencyHighRes = false;
     }
 
-    public Stats(Context ctx) throws IOException {
+    public Stats(Context ctx) {
         version = VERSION;
         id = makeId();
         this.ctx = ctx;
+        subjectSpace = ctx.getSubjectSpace();
         action = ctx.action.getLabel();
         key = action + "."  + ctx.id + "." + id;
-        if (ctx.lcsv == null) {
-            lout = null;
-        }
-        else {
-            lout = new FileOutputStream(ctx.lcsv);
-            lout.write(LCSV_HEADER.getBytes(StandardCharsets.US_ASCII));
-        }
+        latencyHighRes = ctx.latencyHighRes;
+        latencyWriter = null; // opened with the latency pipeline, so stats that never see latency don't make a file
     }
 
     public Stats(JsonValue jv) {
         ctx = null;
-        lout = null;
+        subjectSpace = null;
+        latencyWriter = null;
+        latencyHighRes = false;
         version = JsonValueUtils.readInteger(jv, "version", 0);
         id = JsonValueUtils.readString(jv, "id", null);
         action = JsonValueUtils.readString(jv, " action", null);
         key = JsonValueUtils.readString(jv, "subject", null);
         exceptionMessage = JsonValueUtils.readString(jv, "exceptionMessage", null);
         elapsed = JsonValueUtils.readLong(jv, "elapsed", 0);
+        if (version < 2) {
+            elapsed = elapsed * NANOS_PER_MILLI_L;
+        }
         bytes = JsonValueUtils.readLong(jv, "bytes", 0);
         messageCount = JsonValueUtils.readLong(jv, "messageCount", 0);
         messagePubToServerTimeElapsed = JsonValueUtils.readLong(jv, "messagePubToServerTimeElapsed", 0);
         messageServerToReceiverElapsed = JsonValueUtils.readLong(jv, "messageServerToReceiverElapsed", 0);
         messageFullElapsed = JsonValueUtils.readLong(jv, "messageFullElapsed", 0);
-        messagePubToServerTimeElapsedForAverage = JsonValueUtils.readLong(jv, "messagePubToServerTimeElapsedForAverage", 0);
-        messageServerToReceiverElapsedForAverage = JsonValueUtils.readLong(jv, "messageServerToReceiverElapsedForAverage", 0);
-        messageFullElapsedForAverage = JsonValueUtils.readLong(jv, "messageFullElapsedForAverage", 0);
         maxMessagePubToServerTimeElapsed = JsonValueUtils.readLong(jv, "maxMessagePubToServerTimeElapsed", 0);
         maxMessageServerToReceiverElapsed = JsonValueUtils.readLong(jv, "maxMessageServerToReceiverElapsed", 0);
         maxMessageFullElapsed = JsonValueUtils.readLong(jv, "maxMessageFullElapsed", 0);
         minMessagePubToServerTimeElapsed = JsonValueUtils.readLong(jv, "minMessagePubToServerTimeElapsed", 0);
         minMessageServerToReceiverElapsed = JsonValueUtils.readLong(jv, "minMessageServerToReceiverElapsed", 0);
         minMessageFullElapsed = JsonValueUtils.readLong(jv, "minMessageFullElapsed", 0);
+        latencyDropped = JsonValueUtils.readLong(jv, "latencyDropped", 0);
+        requestTimeouts = JsonValueUtils.readLong(jv, "requestTimeouts", 0);
+        requestNoResponders = JsonValueUtils.readLong(jv, "requestNoResponders", 0);
+        casConflicts = JsonValueUtils.readLong(jv, "casConflicts", 0);
+        clockUncertainty = JsonValueUtils.readLong(jv, "clockUncertainty", 0);
+        pubClockUncertainty = JsonValueUtils.readLong(jv, "pubClockUncertainty", 0);
+        acks = JsonValueUtils.readLong(jv, "acks", 0);
+        ackedMessages = JsonValueUtils.readLong(jv, "ackedMessages", 0);
+        ackElapsed = JsonValueUtils.readLong(jv, "ackElapsed", 0);
+        cpuNanos = JsonValueUtils.readLong(jv, "cpuNanos", -1);
+        allocatedBytes = JsonValueUtils.readLong(jv, "allocatedBytes", -1);
+        gcCount = JsonValueUtils.readLong(jv, "gcCount", 0);
+        gcPauseNanos = JsonValueUtils.readLong(jv, "gcPauseNanos", 0);
+        gcMaxPauseNanos = JsonValueUtils.readLong(jv, "gcMaxPauseNanos", 0);
+        heapPeak = JsonValueUtils.readLong(jv, "heapPeak", 0);
+        JsonValue jvClasses = JsonValueUtils.readValue(jv, "subjectClasses");
+        for (int x = 0; x < classMessages.length; x++) {
+            JsonValue jvc = jvClasses == null ? null : JsonValueUtils.readValue(jvClasses, SubjectSpace.CLASS_LABELS[x]);
+            classMessages[x] = JsonValueUtils.readLong(jvc, "messageCount", 0);
+            classBytes[x] = JsonValueUtils.readLong(jvc, "bytes", 0);
+        }
+        readHistogram(jv, "pubToServerHistogram", pubToServerHistogram);
+        readHistogram(jv, "serverToReceiverHistogram", serverToReceiverHistogram);
+        readHistogram(jv, "fullHistogram", fullHistogram);
+        JsonValue jvOps = JsonValueUtils.readValue(jv, "opHistograms");
+        for (Op op : Op.values()) {
+            readHistogram(jvOps, op.name(), opHistograms[op.ordinal()]);
+        }
+    }
+
+    private static void readHistogram(JsonValue jv, String key, Histogram into) {
+        JsonValue jvh = jv == null ? null : JsonValueUtils.readValue(jv, key);
+        if (jvh != null && jvh.map != null) {
+            into.add(new Histogram(jvh));
+        }
+    }
+
+    private static Histogram[] newOpHistograms() {
+        Histogram[] histograms = new Histogram[Op.values().length];
+        for (int x = 0; x < histograms.length; x++) {
+            histograms[x] = new Histogram();
+        }
+        return histograms;
     }
 
     public Map<String, JsonValue> toJsonValueMap() {
+        JsonValueUtils.MapBuilder opsBuilder = JsonValueUtils.mapBuilder();
+        for (Op op : Op.values()) {
+            opsBuilder.put(op.name(), opHistograms[op.ordinal()].toJsonValue());
+        }
+        JsonValueUtils.MapBuilder classesBuilder = JsonValueUtils.mapBuilder();
+        for (int x = 0; x < classMessages.length; x++) {
+            if (classMessages[x] > 0) {
+                classesBuilder.put(SubjectSpace.CLASS_LABELS[x], JsonValueUtils.mapBuilder()
+                    .put("messageCount", classMessages[x])
+                    .put("bytes", classBytes[x])
+                    .toJsonValue());
+            }
+        }
         return JsonValueUtils.mapBuilder()
             .put("version", version)
             .put("id", id)
@@ -146,18 +294,39 @@ public class Stats {
             .put("messagePubToServerTimeElapsed", messagePubToServerTimeElapsed)
             .put("messageServerToReceiverElapsed", messageServerToReceiverElapsed)
             .put("messageFullElapsed", messageFullElapsed)
-            .put("messagePubToServerTimeElapsedForAverage", messagePubToServerTimeElapsedForAverage)
-            .put("messageServerToReceiverElapsedForAverage", messageServerToReceiverElapsedForAverage)
-            .put("messageFullElapsedForAverage", messageFullElapsedForAverage)
             .put("maxMessagePubToServerTimeElapsed", maxMessagePubToServerTimeElapsed)
             .put("maxMessageServerToReceiverElapsed", maxMessageServerToReceiverElapsed)
             .put("maxMessageFullElapsed", maxMessageFullElapsed)
             .put("minMessagePubToServerTimeElapsed", minMessagePubToServerTimeElapsed)
             .put("minMessageServerToReceiverElapsed", minMessageServerToReceiverElapsed)
             .put("minMessageFullElapsed", minMessageFullElapsed)
+            .put("latencyDropped", latencyDropped)
+            .put("requestTimeouts", requestTimeouts)
+            .put("requestNoResponders", requestNoResponders)
+            .put("casConflicts", casConflicts)
+            .put("clockUncertainty", clockUncertainty)
+            .put("pubClockUncertainty", pubClockUncertainty)
+            .put("acks", acks)
+            .put("ackedMessages", ackedMessages)
+            .put("ackElapsed", ackElapsed)
+            .put("cpuNanos", cpuNanos)
+            .put("allocatedBytes", allocatedBytes)
+            .put("gcCount", gcCount)
+            .put("gcPauseNanos", gcPauseNanos)
+            .put("gcMaxPauseNanos", gcMaxPauseNanos)
+            .put("heapPeak", heapPeak)
+            .put("subjectClasses", classesBuilder.toJsonValue())
+            .put("pubToServerHistogram", pubToServerHistogram.toJsonValue())
+            .put("serverToReceiverHistogram", serverToReceiverHistogram.toJsonValue())
+            .put("fullHistogram", fullHistogram.toJsonValue())
+            .put("opHistograms", opsBuilder.toJsonValue())
             .toJsonValue().map;
     }
 
+    /**
+     * The accumulated time spent in operations
+     * @return the elapsed in nanoseconds
+     */
     public long getElapsed() {
         return elapsed;
     }
@@ -170,6 +339,127 @@ public class Stats {
         return bytes;
     }
 
+    public long getLatencyDropped() {
+        return latencyDropped;
+    }
+
+    public long getSubjectClassMessageCount() {
+        long total = 0;
+        for (long c : classMessages) {
+            total += c;
+        }
+        return total;
+    }
+
+    public long getSubjectClassMessageCount(int subjectClass) {
+        return classMessages[subjectClass];
+    }
+
+    public long getSubjectClassBytes(int subjectClass) {
+        return classBytes[subjectClass];
+    }
+
+    public long getRequestTimeouts() {
+        return requestTimeouts;
+    }
+
+    public long getRequestNoResponders() {
+        return requestNoResponders;
+    }
+
+    public long getCasConflicts() {
+        return casConflicts;
+    }
+
+    /**
+     * How far the receiver's correction to the server clock might be off, for high resolution latency
+     * @return the nanoseconds, 0 if not known
+     */
+    public long getClockUncertainty() {
+        return clockUncertainty;
+    }
+
+    /**
+     * The most the publishers' corrections to the server clock might be off, from the latency headers
+     * @return the nanoseconds, 0 if not known
+     */
+    public long getPubClockUncertainty() {
+        return pubClockUncertainty;
+    }
+
+    public long getAcks() {
+        return acks;
+    }
+
+    public long getAckedMessages() {
+        return ackedMessages;
+    }
+
+    /**
+     * The time spent sending acks on an ack sender thread, not part of the elapsed
+     * @return the nanoseconds
+     */
+    public long getAckElapsed() {
+        return ackElapsed;
+    }
+
+    /**
+     * The cpu time of the thread, when the run was profiled
+     * @return the nanoseconds or -1 if not known
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**
+     * The bytes the thread allocated, when the run was profiled
+     * @return the bytes or -1 if not known
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getGcPauseNanos() {
+        return gcPauseNanos;
+    }
+
+    public long getGcMaxPauseNanos() {
+        return gcMaxPauseNanos;
+    }
+
+    public long getHeapPeak() {
+        return heapPeak;
+    }
+
+    public void setProfile(long cpuNanos, long allocatedBytes, long gcCount, long gcPauseNanos, long gcMaxPauseNanos, long heapPeak) {
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.gcCount = gcCount;
+        this.gcPauseNanos = gcPauseNanos;
+        this.gcMaxPauseNanos = gcMaxPauseNanos;
+        this.heapPeak = heapPeak;
+    }
+
+    public Histogram getPubToServerHistogram() {
+        return pubToServerHistogram;
+    }
+
+    public Histogram getServerToReceiverHistogram() {
+        return serverToReceiverHistogram;
+    }
+
+    public Histogram getFullHistogram() {
+        return fullHistogram;
+    }
+
+    public Histogram getOpHistogram(Op op) {
+        return opHistograms[op.ordinal()];
+    }
+
     public void setException(Exception e){
         exceptionMessage = e.getMessage();
     }
@@ -179,23 +469,99 @@ public class Stats {
     }
 
     public void shutdown() {
-        countService.shutdown();
+        latencyShutdown = true;
+        if (latencyDrainThread == null) {
+            closeLatencyWriter();
+        }
     }
 
     public boolean isTerminated() {
-        return countService.isTerminated();
+        return latencyDrainThread == null || !latencyDrainThread.isAlive();
     }
 
     public void start() {
-        milliNow = System.currentTimeMillis();
+        nanoNow = System.nanoTime();
+    }
+
+    /**
+     * The time start was last called, subclasses shared by threads keep this per thread
+     * @return the start time in System.nanoTime() terms
+     */
+    protected long startNanos() {
+        return nanoNow;
     }
 
     public void stop() {
-        elapsed += System.currentTimeMillis() - milliNow;
+        elapsed += System.nanoTime() - startNanos();
+    }
+
+    public void stop(Op op) {
+        long opElapsed = System.nanoTime() - startNanos();
+        elapsed += opElapsed;
+        opHistograms[op.ordinal()].record(opElapsed);
     }
 
+    /**
+     * The time since start was called
+     * @return the time in nanoseconds
+     */
     public long elapsed() {
-        return System.currentTimeMillis() - milliNow;
+        return System.nanoTime() - startNanos();
+    }
+
+    /**
+     * Record an operation duration that was timed by the caller, does not change the running elapsed
+     * @param op the operation
+     * @param opElapsed the duration in nanoseconds
+     */
+    public void recordOp(Op op, long opElapsed) {
+        opHistograms[op.ordinal()].record(opElapsed);
+    }
+
+    /**
+     * Spread the elapsed over a number of clients that accumulated it at the same time,
+     * so the rates are for the clients together instead of one after the other
+     * @param clients the number of clients
+     */
+    protected void divideElapsed(int clients) {
+        if (clients > 1) {
+            elapsed /= clients;
+        }
+    }
+
+    /**
+     * Add operation durations that were recorded by the caller, i.e. on other threads
+     * @param op the operation
+     * @param h the durations in nanoseconds
+     */
+    public void recordOps(Op op, Histogram h) {
+        opHistograms[op.ordinal()].add(h);
+    }
+
+    public void countRequestFailures(long timeouts, long noResponders) {
+        requestTimeouts += timeouts;
+        requestNoResponders += noResponders;
+    }
+
+    /**
+     * Count a compare and set update that was rejected because the key had moved on.
+     * The attempt is not recorded in the update histogram, so the update latency is only for updates that took.
+     */
+    public void countCasConflict() {
+        casConflicts++;
+    }
+
+    /**
+     * Count the acks sent by an ack sender. The time sending them is kept apart from the elapsed,
+     * so the receive rate is not slowed by acks that the receiver did not wait for.
+     * @param acks the number of acks sent
+     * @param ackedMessages the number of messages they acknowledged, more than the acks when acks cover several messages
+     * @param ackElapsed the time sending them in nanoseconds
+     */
+    public void countAcks(long acks, long ackedMessages, long ackElapsed) {
+        this.acks += acks;
+        this.ackedMessages += ackedMessages;
+        this.ackElapsed += ackElapsed;
     }
 
     public void manualElapsed(long mElapsed) {
@@ -214,56 +580,211 @@ public class Stats {
     }
 
     public void stopAndCount(long bytes) {
-        stop();
+        stop(Op.PUBLISH);
+        messageCount++;
+        this.bytes += bytes;
+    }
+
+    /**
+     * Stop and count an operation that was scheduled to start at the intended time.
+     * The running elapsed gets the actual operation time, the publish histogram gets the time
+     * since the intended start, which corrects for coordinated omission when publishing at a fixed rate.
+     * @param bytes the bytes
+     * @param intended the intended start in System.nanoTime() terms, 0 if there was no intended start
+     */
+    public void stopAndCount(long bytes, long intended) {
+        stopAndCount(Op.PUBLISH, bytes, intended);
+    }
+
+    /**
+     * Stop and count an operation other than a publish, i.e. the key value operations,
+     * each recorded in the histogram for its own type.
+     * @param op the operation
+     * @param bytes the bytes
+     * @param intended the intended start in System.nanoTime() terms, 0 if there was no intended start
+     */
+    public void stopAndCount(Op op, long bytes, long intended) {
+        if (intended == 0) {
+            stop(op);
+        }
+        else {
+            long now = System.nanoTime();
+            elapsed += now - startNanos();
+            opHistograms[op.ordinal()].record(now - intended);
+        }
         messageCount++;
         this.bytes += bytes;
     }
 
     public void count(final Message m, final long mReceived) {
+        _count(m, mReceived);
+    }
+
+    /**
+     * Count messages that were received together, i.e. the list from a fetch, in one call.
+     * Stats shared by threads take their lock once for the batch instead of once per message.
+     * @param messages the messages
+     * @param mReceived the time the batch was received, in the latency time units
+     */
+    public void countBatch(final List<Message> messages, final long mReceived) {
+        for (int x = 0; x < messages.size(); x++) {
+            _count(messages.get(x), mReceived);
+        }
+    }
+
+    private void _count(final Message m, final long mReceived) {
         messageCount++;
         this.bytes += m.getData().length;
-        countService.submit(() -> countTask(m, mReceived));
+        if (subjectSpace != null) {
+            int sc = subjectSpace.classOf(m.getSubject());
+            if (sc != -1) {
+                classMessages[sc]++;
+                classBytes[sc] += m.getData().length;
+            }
+        }
+        if (m.isJetStream()) {
+            if (latencyHighRes) {
+                countHighRes(m, mReceived);
+                return;
+            }
+            long pubTime = readPubTime(m.getHeaders());
+            if (pubTime != -1) {
+                if (latencyRing == null) {
+                    startLatencyPipeline();
+                }
+                latencyRing.offer(pubTime, m.metaData().timestamp().toInstant().toEpochMilli(), mReceived);
+            }
+        }
     }
 
-    private void countTask(Message m, long mReceived) {
+    // the received time and the publish time in the header are already on the server clock,
+    // the server stamp is the server clock, so all three are in epoch nanos on the same clock
+    private void countHighRes(Message m, long mReceived) {
         Headers h = m.getHeaders();
+        long pubTime = readLongHeader(h, HDR_PUB_NANOS);
+        if (pubTime != -1) {
+            if (latencyRing == null) {
+                clockUncertainty = ctx.getClockOffset().getUncertaintyNanos();
+                startLatencyPipeline();
+            }
+            pubClockUncertainty = Math.max(pubClockUncertainty, readLongHeader(h, HDR_PUB_UNCERTAINTY));
+            ZonedDateTime stamp = m.metaData().timestamp();
+            latencyRing.offer(pubTime, stamp.toEpochSecond() * 1_000_000_000L + stamp.getNano(), mReceived);
+        }
+    }
+
+    /**
+     * The publish time from the latency header
+     * @param h the headers, can be null
+     * @return the publish time or -1 if there is no latency header
+     */
+    public static long readPubTime(Headers h) {
+        return readLongHeader(h, HDR_PUB_TIME);
+    }
+
+    private static long readLongHeader(Headers h, String name) {
         if (h != null) {
-            String hPubTime = h.getFirst(HDR_PUB_TIME);
-            if (hPubTime != null) {
-                long messagePubTime = Long.parseLong(hPubTime);
-                long messageStampTime = m.metaData().timestamp().toInstant().toEpochMilli();
-
-                long pToS = messageStampTime - messagePubTime;
-                messagePubToServerTimeElapsed += pToS;
-                maxMessagePubToServerTimeElapsed = Math.max(maxMessagePubToServerTimeElapsed, pToS);
-                minMessagePubToServerTimeElapsed = Math.min(minMessagePubToServerTimeElapsed, pToS);
-
-                long sToR = mReceived - messageStampTime;
-                messageServerToReceiverElapsed += sToR;
-                maxMessageServerToReceiverElapsed = Math.max(maxMessageServerToReceiverElapsed, sToR);
-                minMessageServerToReceiverElapsed = Math.min(minMessageServerToReceiverElapsed, sToR);
-
-                long full = mReceived - messagePubTime;
-                messageFullElapsed += full;
-                maxMessageFullElapsed = Math.max(maxMessageFullElapsed, full);
-                minMessageFullElapsed = Math.min(minMessageFullElapsed, full);
-
-                if (lout != null) {
-                    try {
-                        lout.write(("" + messagePubTime + "," + messageStampTime + "," + mReceived
-                            + "," + pToS + "," + sToR + "," + full
-                            + "\n").getBytes(StandardCharsets.US_ASCII));
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
+            String value = h.getFirst(name);
+            if (value != null) {
+                return Long.parseLong(value);
+            }
+        }
+        return -1;
+    }
+
+    private void startLatencyPipeline() {
+        openLatencyWriter();
+        latencyRing = new LatencyRing(ctx == null ? LatencyRing.DEFAULT_CAPACITY : ctx.latencyRingSize);
+        latencyDrainThread = new Thread(this::drainLatency, "latency-" + id);
+        latencyDrainThread.setDaemon(true);
+        latencyDrainThread.start();
+    }
+
+    private void drainLatency() {
+        while (true) {
+            if (latencyRing.drain(latencyHandler) == 0) {
+                if (latencyShutdown) {
+                    // the producer is done before shutdown is set, so one more drain gets everything
+                    latencyRing.drain(latencyHandler);
+                    break;
                 }
+                LockSupport.parkNanos(LATENCY_DRAIN_PARK_NANOS);
+            }
+        }
+        latencyDropped += latencyRing.getDropped();
+        closeLatencyWriter();
+    }
+
+    private void openLatencyWriter() {
+        if (ctx == null) {
+            return;
+        }
+        try {
+            if (ctx.lbin != null) {
+                latencyWriter = LatencyWriter.binary(ctx.getLatencyFileSpec(ctx.lbin), ctx.lmap, latencyHighRes ? 1 : NANOS_PER_MILLI_L);
+            }
+            else if (ctx.lcsv != null) {
+                latencyWriter = LatencyWriter.csv(ctx.getLatencyFileSpec(ctx.lcsv));
+            }
+        }
+        catch (IOException e) {
+            // record without the file
+            ctx.app.reportEx(e);
+        }
+    }
+
+    private void closeLatencyWriter() {
+        if (latencyWriter != null) {
+            try {
+                latencyWriter.close();
+            }
+            catch (IOException e) {
+                ctx.app.reportEx(e);
+            }
+            latencyWriter = null;
+        }
+    }
+
+    private void recordLatency(long messagePubTime, long messageStampTime, long mReceived) {
+        // the histograms are in nanoseconds, the running latency numbers stay in milliseconds
+        long nanosPerUnit = latencyHighRes ? 1 : NANOS_PER_MILLI_L;
+
+        long pToSNanos = (messageStampTime - messagePubTime) * nanosPerUnit;
+        long pToS = pToSNanos / NANOS_PER_MILLI_L;
+        messagePubToServerTimeElapsed += pToS;
+        maxMessagePubToServerTimeElapsed = Math.max(maxMessagePubToServerTimeElapsed, pToS);
+        minMessagePubToServerTimeElapsed = Math.min(minMessagePubToServerTimeElapsed, pToS);
+        pubToServerHistogram.record(pToSNanos);
+
+        long sToRNanos = (mReceived - messageStampTime) * nanosPerUnit;
+        long sToR = sToRNanos / NANOS_PER_MILLI_L;
+        messageServerToReceiverElapsed += sToR;
+        maxMessageServerToReceiverElapsed = Math.max(maxMessageServerToReceiverElapsed, sToR);
+        minMessageServerToReceiverElapsed = Math.min(minMessageServerToReceiverElapsed, sToR);
+        serverToReceiverHistogram.record(sToRNanos);
+
+        long fullNanos = (mReceived - messagePubTime) * nanosPerUnit;
+        long full = fullNanos / NANOS_PER_MILLI_L;
+        messageFullElapsed += full;
+        maxMessageFullElapsed = Math.max(maxMessageFullElapsed, full);
+        minMessageFullElapsed = Math.min(minMessageFullElapsed, full);
+        fullHistogram.record(fullNanos);
+
+        if (latencyWriter != null) {
+            try {
+                latencyWriter.write(messagePubTime, messageStampTime, mReceived);
+            }
+            catch (IOException e) {
+                // stop writing, but keep recording
+                ctx.app.reportEx(e);
+                closeLatencyWriter();
             }
         }
     }
 
     public static void report(Stats stats, String label, boolean header, boolean footer, PrintStream out) {
-        double messagesPerSecond = stats.elapsed == 0 ? 0 : stats.messageCount * MILLIS_PER_SECOND / stats.elapsed;
-        double bytesPerSecond = MILLIS_PER_SECOND * (stats.bytes) / (stats.elapsed);
+        double messagesPerSecond = stats.elapsed == 0 ? 0 : stats.messageCount * NANOS_PER_SECOND / stats.elapsed;
+        double bytesPerSecond = stats.elapsed == 0 ? 0 : NANOS_PER_SECOND * (stats.bytes) / (stats.elapsed);
         if (header) {
             out.println("\n" + REPORT_SEP_LINE);
             out.printf(REPORT_LINE_HEADER, stats.action);
@@ -271,7 +792,7 @@ public class Stats {
         }
         out.printf(REPORT_LINE_FORMAT, label,
             format(stats.messageCount),
-            format3(stats.elapsed),
+            format3(stats.elapsed / NANOS_PER_MILLI),
             format3(messagesPerSecond),
             humanBytes(bytesPerSecond));
         if (footer) {
@@ -302,11 +823,11 @@ public class Stats {
         }
 
         double pubMper = stats.messagePubToServerTimeElapsed == 0 ? 0 : stats.messageCount * MILLIS_PER_SECOND / stats.messagePubToServerTimeElapsed;
-        double pubBper = stats.bytes * MILLIS_PER_SECOND / (stats.messagePubToServerTimeElapsed);
+        double pubBper = stats.messagePubToServerTimeElapsed == 0 ? 0 : stats.bytes * MILLIS_PER_SECOND / stats.messagePubToServerTimeElapsed;
         double recMper = stats.messageServerToReceiverElapsed == 0 ? 0 : stats.messageCount * MILLIS_PER_SECOND / stats.messageServerToReceiverElapsed;
-        double recBper = stats.bytes * MILLIS_PER_SECOND / (stats.messageServerToReceiverElapsed);
+        double recBper = stats.messageServerToReceiverElapsed == 0 ? 0 : stats.bytes * MILLIS_PER_SECOND / stats.messageServerToReceiverElapsed;
         double totMper = stats.messageFullElapsed == 0 ? 0 : stats.messageCount * MILLIS_PER_SECOND / stats.messageFullElapsed;
-        double totBper = stats.bytes * MILLIS_PER_SECOND / (stats.messageFullElapsed);
+        double totBper = stats.messageFullElapsed == 0 ? 0 : stats.bytes * MILLIS_PER_SECOND / stats.messageFullElapsed;
         out.printf(LT_REPORT_LINE_FORMAT, label,
             format3(pubMper),
             humanBytes(pubBper),
@@ -319,39 +840,78 @@ public class Stats {
         }
     }
 
-    public static void lmReport(Stats stats, String label, boolean header, boolean total, PrintStream out) {
+    public static void lmReport(Stats stats, String label, boolean header, PrintStream out) {
         if (header) {
             out.println("\n" + LM_REPORT_SEP_LINE);
             out.println(LM_REPORT_LINE_HEADER);
             out.println(LM_REPORT_SEP_LINE);
         }
 
-        double pubMper;
-        double recMper;
-        double totMper;
-        if (total) {
-            pubMper = stats.messagePubToServerTimeElapsedForAverage == 0 ? 0 : stats.messagePubToServerTimeElapsedForAverage / MILLIS_PER_SECOND / stats.messageCount;
-            recMper = stats.messageServerToReceiverElapsedForAverage == 0 ? 0 : stats.messageServerToReceiverElapsedForAverage / MILLIS_PER_SECOND / stats.messageCount;
-            totMper = stats.messageFullElapsedForAverage == 0 ? 0 : stats.messageFullElapsedForAverage / MILLIS_PER_SECOND / stats.messageCount;
-        }
-        else {
-            pubMper = stats.messagePubToServerTimeElapsed == 0 ? 0 : stats.messagePubToServerTimeElapsed / MILLIS_PER_SECOND / stats.messageCount;
-            recMper = stats.messageServerToReceiverElapsed == 0 ? 0 : stats.messageServerToReceiverElapsed / MILLIS_PER_SECOND / stats.messageCount;
-            totMper = stats.messageFullElapsed == 0 ? 0 : stats.messageFullElapsed / MILLIS_PER_SECOND / stats.messageCount;
+        Histogram pub = stats.pubToServerHistogram;
+        Histogram rec = stats.serverToReceiverHistogram;
+        Histogram tot = stats.fullHistogram;
+        out.printf(LM_REPORT_LINE_FORMAT, label + " Average", formatMillis(pub.getMean()), formatMillis(rec.getMean()), formatMillis(tot.getMean()));
+        out.printf(LM_REPORT_LINE_FORMAT, "Minimum", formatMillis(pub.getMin()), formatMillis(rec.getMin()), formatMillis(tot.getMin()));
+        for (double pct : Histogram.REPORT_PERCENTILES) {
+            out.printf(LM_REPORT_LINE_FORMAT, "p" + pct,
+                formatMillis(pub.getValueAtPercentile(pct)),
+                formatMillis(rec.getValueAtPercentile(pct)),
+                formatMillis(tot.getValueAtPercentile(pct)));
         }
-        out.printf(LM_REPORT_LINE_FORMAT, label + " Average", format(pubMper), format(recMper), format(totMper));
+        out.printf(LM_REPORT_LINE_FORMAT, "Maximum", formatMillis(pub.getMax()), formatMillis(rec.getMax()), formatMillis(tot.getMax()));
 
-        pubMper = stats.minMessagePubToServerTimeElapsed == 0 ? 0 : stats.minMessagePubToServerTimeElapsed / MILLIS_PER_SECOND;
-        recMper = stats.minMessageServerToReceiverElapsed == 0 ? 0 : stats.minMessageServerToReceiverElapsed / MILLIS_PER_SECOND;
-        totMper = stats.minMessageFullElapsed == 0 ? 0 : stats.minMessageFullElapsed / MILLIS_PER_SECOND;
-        out.printf(LM_REPORT_LINE_FORMAT, "Minimum", format(pubMper), format(recMper), format(totMper));
+        out.println(LM_REPORT_SEP_LINE);
+    }
 
-        pubMper = stats.maxMessagePubToServerTimeElapsed == 0 ? 0 : stats.maxMessagePubToServerTimeElapsed / MILLIS_PER_SECOND;
-        recMper = stats.maxMessageServerToReceiverElapsed == 0 ? 0 : stats.maxMessageServerToReceiverElapsed / MILLIS_PER_SECOND;
-        totMper = stats.maxMessageFullElapsed == 0 ? 0 : stats.maxMessageFullElapsed / MILLIS_PER_SECOND;
-        out.printf(LM_REPORT_LINE_FORMAT, "Maximum", format(pubMper), format(recMper), format(totMper));
+    public static void classReport(Stats stats, PrintStream out) {
+        long total = stats.getSubjectClassMessageCount();
+        out.println("\n" + CLASS_REPORT_SEP_LINE);
+        out.printf(CLASS_REPORT_LINE_HEADER, "Subject Class");
+        out.println(CLASS_REPORT_SEP_LINE);
+        for (int x = 0; x < SubjectSpace.CLASS_LABELS.length; x++) {
+            out.printf(CLASS_REPORT_LINE_FORMAT, SubjectSpace.CLASS_LABELS[x],
+                format(stats.classMessages[x]),
+                String.format("%.2f", 100.0 * stats.classMessages[x] / total),
+                humanBytes(stats.classBytes[x]));
+        }
+        out.println(CLASS_REPORT_SEP_LINE);
+    }
 
-        out.println(LM_REPORT_SEP_LINE);
+    public static void profileReport(Stats stats, String label, boolean header, boolean footer, PrintStream out) {
+        if (header) {
+            out.println("\n" + PROFILE_REPORT_SEP_LINE);
+            out.printf(PROFILE_REPORT_LINE_HEADER, "Profile");
+            out.println(PROFILE_REPORT_SEP_LINE);
+        }
+        out.printf(PROFILE_REPORT_LINE_FORMAT, label,
+            stats.cpuNanos < 0 ? "" : formatMillis(stats.cpuNanos),
+            stats.cpuNanos < 0 || stats.messageCount == 0 ? "" : format(stats.cpuNanos / stats.messageCount),
+            stats.allocatedBytes < 0 ? "" : humanBytes(stats.allocatedBytes),
+            stats.allocatedBytes < 0 || stats.messageCount == 0 ? "" : format(stats.allocatedBytes / stats.messageCount));
+        if (footer) {
+            out.println(PROFILE_REPORT_SEP_LINE);
+        }
+    }
+
+    public static void pctReport(Histogram h, String label, String title, boolean header, boolean footer, PrintStream out) {
+        if (header) {
+            out.println("\n" + PCT_REPORT_SEP_LINE);
+            out.printf(PCT_REPORT_LINE_HEADER, title);
+            out.println(PCT_REPORT_SEP_LINE);
+        }
+        double[] pcts = Histogram.REPORT_PERCENTILES;
+        out.printf(PCT_REPORT_LINE_FORMAT, label,
+            format(h.getCount()),
+            formatMillis(h.getMin()),
+            formatMillis(h.getValueAtPercentile(pcts[0])),
+            formatMillis(h.getValueAtPercentile(pcts[1])),
+            formatMillis(h.getValueAtPercentile(pcts[2])),
+            formatMillis(h.getValueAtPercentile(pcts[3])),
+            formatMillis(h.getValueAtPercentile(pcts[4])),
+            formatMillis(h.getMax()));
+        if (footer) {
+            out.println(PCT_REPORT_SEP_LINE);
+        }
     }
 
     public static Stats total(List<Stats> statList) {
@@ -371,10 +931,6 @@ public class Stats {
         total.messageServerToReceiverElapsed = Math.max(total.messageServerToReceiverElapsed, stats.messageServerToReceiverElapsed);
         total.messageFullElapsed = Math.max(total.messageFullElapsed, stats.messageFullElapsed);
 
-        total.messagePubToServerTimeElapsedForAverage += stats.messagePubToServerTimeElapsed;
-        total.messageServerToReceiverElapsedForAverage += stats.messageServerToReceiverElapsed;
-        total.messageFullElapsedForAverage += stats.messageFullElapsed;
-
         total.maxMessagePubToServerTimeElapsed = Math.max(total.maxMessagePubToServerTimeElapsed, stats.maxMessagePubToServerTimeElapsed);
         total.maxMessageServerToReceiverElapsed = Math.max(total.maxMessageServerToReceiverElapsed, stats.maxMessageServerToReceiverElapsed);
         total.maxMessageFullElapsed = Math.max(total.maxMessageFullElapsed, stats.maxMessageFullElapsed);
@@ -382,6 +938,36 @@ public class Stats {
         total.minMessagePubToServerTimeElapsed = Math.min(total.minMessagePubToServerTimeElapsed, stats.minMessagePubToServerTimeElapsed);
         total.minMessageServerToReceiverElapsed = Math.min(total.minMessageServerToReceiverElapsed, stats.minMessageServerToReceiverElapsed);
         total.minMessageFullElapsed = Math.min(total.minMessageFullElapsed, stats.minMessageFullElapsed);
+        total.latencyDropped += stats.latencyDropped;
+        total.requestTimeouts += stats.requestTimeouts;
+        total.requestNoResponders += stats.requestNoResponders;
+        total.casConflicts += stats.casConflicts;
+        total.clockUncertainty = Math.max(total.clockUncertainty, stats.clockUncertainty);
+        total.pubClockUncertainty = Math.max(total.pubClockUncertainty, stats.pubClockUncertainty);
+        total.acks += stats.acks;
+        total.ackedMessages += stats.ackedMessages;
+        total.ackElapsed = Math.max(total.ackElapsed, stats.ackElapsed);
+        if (stats.cpuNanos >= 0) {
+            total.cpuNanos = Math.max(total.cpuNanos, 0) + stats.cpuNanos;
+        }
+        if (stats.allocatedBytes >= 0) {
+            total.allocatedBytes = Math.max(total.allocatedBytes, 0) + stats.allocatedBytes;
+        }
+        total.gcCount = Math.max(total.gcCount, stats.gcCount);
+        total.gcPauseNanos = Math.max(total.gcPauseNanos, stats.gcPauseNanos);
+        total.gcMaxPauseNanos = Math.max(total.gcMaxPauseNanos, stats.gcMaxPauseNanos);
+        total.heapPeak = Math.max(total.heapPeak, stats.heapPeak);
+        for (int x = 0; x < total.classMessages.length; x++) {
+            total.classMessages[x] += stats.classMessages[x];
+            total.classBytes[x] += stats.classBytes[x];
+        }
+
+        total.pubToServerHistogram.add(stats.pubToServerHistogram);
+        total.serverToReceiverHistogram.add(stats.serverToReceiverHistogram);
+        total.fullHistogram.add(stats.fullHistogram);
+        for (int x = 0; x < total.opHistograms.length; x++) {
+            total.opHistograms[x].add(stats.opHistograms[x]);
+        }
     }
 
     public static void report(List<Stats> statList) {
@@ -417,7 +1003,23 @@ public class Stats {
             report(totalStats, "Total", false, true, out);
         }
 
-        if (statList.get(0).messagePubToServerTimeElapsed > 0) {
+        for (Op op : Op.values()) {
+            if (totalStats.getOpHistogram(op).getCount() > 0) {
+                for (int x = 0; x < statList.size(); x++) {
+                    Stats stats = statList.get(x);
+                    pctReport(stats.getOpHistogram(op), lineLabel(x), op.getLabel(), x == 0, false, out);
+                }
+                out.println(PCT_REPORT_SEP_LINE);
+                if (showTotal) {
+                    pctReport(totalStats.getOpHistogram(op), "Total", op.getLabel(), false, true, out);
+                }
+                if (op == Op.WINDOW) {
+                    out.printf(WINDOW_BLOCKED_FORMAT, formatMillis(totalStats.getOpHistogram(op).getSum()));
+                }
+            }
+        }
+
+        if (totalStats.fullHistogram.getCount() > 0) {
             for (int x = 0; x < statList.size(); x++) {
                 Stats stats = statList.get(x);
                 ltReport(stats, lineLabel(x), x == 0, false, out);
@@ -429,12 +1031,55 @@ public class Stats {
 
             for (int x = 0; x < statList.size(); x++) {
                 Stats stats = statList.get(x);
-                lmReport(stats, lineLabel(x), x == 0, false, out);
+                lmReport(stats, lineLabel(x), x == 0, out);
+            }
+            if (showTotal) {
+                lmReport(totalStats, "Total", false, out);
+            }
+            if (totalStats.clockUncertainty > 0 || totalStats.pubClockUncertainty > 0) {
+                out.printf(CLOCK_FORMAT, formatMillis(totalStats.clockUncertainty), formatMillis(totalStats.pubClockUncertainty),
+                    formatMillis(totalStats.clockUncertainty + totalStats.pubClockUncertainty));
+            }
+        }
+
+        if (totalStats.getSubjectClassMessageCount() > 0) {
+            classReport(totalStats, out);
+        }
+
+        if (totalStats.cpuNanos >= 0 || totalStats.allocatedBytes >= 0) {
+            for (int x = 0; x < statList.size(); x++) {
+                Stats stats = statList.get(x);
+                profileReport(stats, lineLabel(x), x == 0, false, out);
             }
+            out.println(PROFILE_REPORT_SEP_LINE);
             if (showTotal) {
-                lmReport(totalStats, "Total", false, true, out);
+                profileReport(totalStats, "Total", false, true, out);
             }
         }
+
+        if (totalStats.gcCount > 0 || totalStats.heapPeak > 0) {
+            out.printf(GC_FORMAT, format(totalStats.gcCount), formatMillis(totalStats.gcPauseNanos),
+                formatMillis(totalStats.gcMaxPauseNanos), humanBytes(totalStats.heapPeak));
+        }
+
+        if (totalStats.requestTimeouts > 0 || totalStats.requestNoResponders > 0) {
+            out.printf(REQUEST_FAILED_FORMAT, format(totalStats.requestTimeouts), format(totalStats.requestNoResponders));
+        }
+
+        if (totalStats.casConflicts > 0) {
+            out.printf(CAS_CONFLICT_FORMAT, format(totalStats.casConflicts),
+                format(totalStats.casConflicts + totalStats.getOpHistogram(Op.KV_UPDATE).getCount()));
+        }
+
+        if (totalStats.acks > 0) {
+            double acksPerSecond = totalStats.ackElapsed == 0 ? 0 : totalStats.acks * NANOS_PER_SECOND / totalStats.ackElapsed;
+            out.printf(ACK_FORMAT, format(totalStats.acks), format(totalStats.ackedMessages),
+                formatMillis(totalStats.ackElapsed), format3(acksPerSecond));
+        }
+
+        if (totalStats.latencyDropped > 0) {
+            out.printf(LATENCY_DROPPED_FORMAT, format(totalStats.latencyDropped), format(totalStats.latencyDropped + totalStats.fullHistogram.getCount()));
+        }
     }
 
     public static String lineLabel(int x) {
@@ -454,6 +1099,10 @@ public class Stats {
         }
     }
 
+    public static String formatMillis(double nanos) {
+        return format3(nanos / NANOS_PER_MILLI);
+    }
+
     public static String format(Number s) {
         return NumberFormat.getNumberInstance(Locale.getDefault()).format(s);
     }
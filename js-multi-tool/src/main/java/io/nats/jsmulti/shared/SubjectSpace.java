@@ -0,0 +1,253 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A space of keyed subjects made from a template like orders.{key}, where {key} is a whole token.
+ * Publishers take a {@link Chooser} per thread that picks the next subject from an array
+ * built once before publishing, so there is no string building while publishing.
+ * Keys are numbered by popularity, key 0 being the most popular for the skewed distributions,
+ * so consumers can class a subject as hot, warm or cold from its key.
+ */
+public class SubjectSpace {
+
+    public static final String KEY = "{key}";
+
+    public enum Distribution {
+        UNIFORM("uniform"),
+        ZIPFIAN("zipfian"),
+        HOTSPOT("hotspot");
+
+        private final String label;
+
+        Distribution(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static Distribution getInstance(String text) {
+            for (Distribution d : Distribution.values()) {
+                if (d.label.equalsIgnoreCase(text)) {
+                    return d;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static final double ZIPFIAN_THETA = 0.99;
+    public static final double HOTSPOT_KEY_FRACTION = 0.2;
+    public static final double HOTSPOT_OP_FRACTION = 0.8;
+
+    // subject classes by key popularity, the upper bound of each class as a fraction of the key space
+    public static final String[] CLASS_LABELS = {"Hot 1%", "Warm 9%", "Cold 90%"};
+    private static final double[] CLASS_BOUNDS = {0.01, 0.1, 1.0};
+
+    private final String template;
+    private final String prefix;
+    private final String suffix;
+    private final int keySpace;
+    private final Distribution distribution;
+    private final int[] classBounds;
+    private final AtomicInteger nextSeed = new AtomicInteger();
+
+    // zipfian constants
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+    private final double halfPowTheta;
+
+    private volatile String[] subjects;
+
+    public SubjectSpace(String template, int keySpace, Distribution distribution) {
+        int at = template.indexOf(KEY);
+        if (at == -1 || template.indexOf(KEY, at + 1) != -1) {
+            throw new IllegalArgumentException("Subject template must contain " + KEY + " once.");
+        }
+        prefix = template.substring(0, at);
+        suffix = template.substring(at + KEY.length());
+        if ((!prefix.isEmpty() && !prefix.endsWith(".")) || (!suffix.isEmpty() && !suffix.startsWith("."))) {
+            throw new IllegalArgumentException("Subject template " + KEY + " must be a whole token.");
+        }
+        this.template = template;
+        this.keySpace = keySpace;
+        this.distribution = distribution;
+
+        classBounds = new int[CLASS_BOUNDS.length];
+        for (int x = 0; x < classBounds.length; x++) {
+            classBounds[x] = Math.max(1, (int)Math.ceil(keySpace * CLASS_BOUNDS[x]));
+        }
+
+        if (distribution == Distribution.ZIPFIAN) {
+            double zeta = 0;
+            for (int i = 1; i <= keySpace; i++) {
+                zeta += 1 / Math.pow(i, ZIPFIAN_THETA);
+            }
+            zetaN = zeta;
+            double zeta2 = 1 + 1 / Math.pow(2, ZIPFIAN_THETA);
+            alpha = 1 / (1 - ZIPFIAN_THETA);
+            eta = (1 - Math.pow(2.0 / keySpace, 1 - ZIPFIAN_THETA)) / (1 - zeta2 / zetaN);
+            halfPowTheta = Math.pow(0.5, ZIPFIAN_THETA);
+        }
+        else {
+            zetaN = 0;
+            alpha = 0;
+            eta = 0;
+            halfPowTheta = 0;
+        }
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public int getKeySpace() {
+        return keySpace;
+    }
+
+    public Distribution getDistribution() {
+        return distribution;
+    }
+
+    /**
+     * The subject with the key token as a wildcard, for subscribing and stream lookup
+     * @return the wildcard subject
+     */
+    public String getWildcard() {
+        return prefix + "*" + suffix;
+    }
+
+    public String subject(int key) {
+        return prefix + key + suffix;
+    }
+
+    /**
+     * A chooser for one thread. The subjects are built the first time a chooser is made.
+     * @return the chooser
+     */
+    public Chooser chooser() {
+        if (subjects == null) {
+            synchronized (this) {
+                if (subjects == null) {
+                    String[] temp = new String[keySpace];
+                    for (int key = 0; key < keySpace; key++) {
+                        temp[key] = subject(key);
+                    }
+                    subjects = temp;
+                }
+            }
+        }
+        return new Chooser(subjects, new SplittableRandom(Payloads.SEED + nextSeed.getAndIncrement()));
+    }
+
+    /**
+     * Picks subjects with the distribution. Not thread safe, each thread has its own.
+     */
+    public class Chooser {
+        private final String[] subjects;
+        private final SplittableRandom random;
+
+        private Chooser(String[] subjects, SplittableRandom random) {
+            this.subjects = subjects;
+            this.random = random;
+        }
+
+        public String next() {
+            return subjects[nextKey()];
+        }
+
+        public int nextKey() {
+            switch (distribution) {
+                case ZIPFIAN:
+                    return nextZipfian();
+                case HOTSPOT:
+                    return nextHotspot();
+                default:
+                    return random.nextInt(keySpace);
+            }
+        }
+
+        // Gray et al, Quickly Generating Billion-Record Synthetic Databases, as used by YCSB
+        private int nextZipfian() {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + halfPowTheta) {
+                return Math.min(1, keySpace - 1);
+            }
+            int key = (int)(keySpace * Math.pow(eta * u - eta + 1, alpha));
+            return Math.min(key, keySpace - 1);
+        }
+
+        private int nextHotspot() {
+            int hotKeys = Math.max(1, (int)(keySpace * HOTSPOT_KEY_FRACTION));
+            if (hotKeys == keySpace || random.nextDouble() < HOTSPOT_OP_FRACTION) {
+                return random.nextInt(hotKeys);
+            }
+            return hotKeys + random.nextInt(keySpace - hotKeys);
+        }
+    }
+
+    /**
+     * The key of a subject in this space, parsed without allocating
+     * @param subject the subject
+     * @return the key or -1 if the subject is not in this space
+     */
+    public int keyOf(String subject) {
+        int end = subject.length() - suffix.length();
+        if (end <= prefix.length() || !subject.startsWith(prefix) || !subject.endsWith(suffix)) {
+            return -1;
+        }
+        int key = 0;
+        for (int x = prefix.length(); x < end; x++) {
+            char c = subject.charAt(x);
+            if (c < '0' || c > '9' || key > (Integer.MAX_VALUE - 9) / 10) {
+                return -1;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key < keySpace ? key : -1;
+    }
+
+    /**
+     * The class of a subject by the popularity of its key
+     * @param subject the subject
+     * @return the index into CLASS_LABELS or -1 if the subject is not in this space
+     */
+    public int classOf(String subject) {
+        int key = keyOf(subject);
+        if (key == -1) {
+            return -1;
+        }
+        for (int x = 0; x < classBounds.length; x++) {
+            if (key < classBounds[x]) {
+                return x;
+            }
+        }
+        return classBounds.length - 1;
+    }
+}
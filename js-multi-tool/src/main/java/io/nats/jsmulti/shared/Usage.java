@@ -35,12 +35,25 @@ public class Usage {
         + "\n   SubPullRead  - pull subscribe read messages"
         + "\n   SubPullReadQueue - pull subscribe read messages, queue (using common durable)"
         + "\n                    Requires 2 or more threads"
+        + "\n   SubFetch     - simplified consumer fetch messages"
+        + "\n   SubIterate   - simplified consumer iterate messages"
+        + "\n   SubConsume   - simplified consumer consume messages with a callback handler"
+        + "\n   SubFetchQueue, SubIterateQueue, SubConsumeQueue - same, queue (using common durable)"
+        + "\n                    Requires 2 or more threads"
+        + "\n                    Simplified consumers need -t stream unless the subject is in exactly one stream"
         + "\n   RTT          - round trip timing"
         + "\n   Pub          - core publish"
         + "\n   Request      - core request"
+        + "\n   RequestAsync - core request asynchronously, keeping up to -mif requests outstanding"
         + "\n   Reply        - core reply"
         + "\n   SubCore      - core push subscribe read messages (synchronously)"
         + "\n   SubCoreQueue - core push subscribe read messages with queue (synchronously)."
+        + "\n   KvPut        - key value put, or get for -kvrp percent of the operations"
+        + "\n   KvGet        - key value get, or put for 100 - -kvrp percent of the operations"
+        + "\n   KvUpdateCas  - key value get then update expecting the revision, conflicts counted"
+        + "\n   KvWatch      - key value watch all keys for updates"
+        + "\n   OsPut        - object store put synthetic objects"
+        + "\n   OsGet        - object store get objects"
         ;
 
     public static final String SERVER = "-s server url (string), optional, defaults to nats://localhost:4222"
@@ -50,11 +63,46 @@ public class Usage {
         + "\n-of options factory class name. Class with no op constructor that implements OptionsFactory"
         + "\n    If supplied, used instead of -s, -cf, -ctms and -rwms."
         + "\n-rf report frequency (number) how often to print progress, defaults to 10% of message count."
-        + "\n    <= 0 for no reporting. Reporting time is excluded from timings";
+        + "\n    <= 0 for no reporting. Reporting time is excluded from timings"
+        + "\n-ivf interval-file-spec, records msgs/sec, bytes/sec, latency percentiles and errors"
+        + "\n    for every interval of the run, as csv if the file ends with .csv, otherwise json lines"
+        + "\n-iv interval millis (number) the length of each interval for -ivf, defaults to 1000"
+        + "\n-mp metrics port (number) serve the stats in OpenMetrics format at http://host:port/metrics"
+        + "\n    while running, for Prometheus to scrape"
+        + "\n-prof profile, sample cpu time and bytes allocated per thread and the gc pauses during the run,"
+        + "\n    reported per message for each thread"
+        + "\n-rsf results-file-spec, appends the stats of the run, histograms included, as a json line"
+        + "\n    for comparing runs with Compare";
 
     public static final String LATENCY =
         "-lf latency flag. Needed when publishing to test latency. See examples."
-        + "\n-lcsv latency-csv-file-spec";
+        + "\n-lhr latency high resolution, implies -lf. Use on both the publisher and the consumer."
+        + "\n     Each run estimates its clock offset to the server clock before starting, headers carry"
+        + "\n     epoch nanos and the latency is corrected for clock skew between hosts."
+        + "\n     The estimate makes a memory stream jsmulti-clock-<id> on jsmulti.clock.<id> and deletes it after."
+        + "\n     In a cluster the offset is to the clock stream leader's clock, not the data stream leader's."
+        + "\n-lcsv latency-csv-file-spec, buffered csv of every latency sample"
+        + "\n-lbin latency-binary-file-spec, compact binary log of every latency sample, takes precedence over -lcsv"
+        + "\n     convert to csv after the run with io.nats.jsmulti.shared.LatencyLogConverter"
+        + "\n-lmap write the -lbin file memory mapped"
+        + "\n     files get the run id before the extension, with multiple threads each thread that records latency has its own numbered file"
+        + "\n-lrs latency ring size (number) of latency samples buffered between the consumer thread"
+        + "\n     and the latency recorder, defaults to 65536, samples are dropped and counted when full";
+
+    public static final String KEY_VALUE = "-kvb kv bucket (string) for the Kv actions, created if it does not exist, defaults to jsmulti"
+        + "\n-kvh kv history (number 1-64) history per key when the bucket is created, defaults to 1"
+        + "\n-kvrp kv read percent (number 0-100) of the operations that are gets, the rest are"
+        + "\n     the write for the action, defaults to 100 for KvGet, 0 otherwise"
+        + "\n     keys come from -st, -ks and -kd, the template defaults to {key}, values are the -ps payloads";
+
+    public static final String OBJECT_STORE = "-osb os bucket (string) for the Os actions, created if it does not exist, defaults to jsmulti"
+        + "\n-oss os object size (number) bytes in each object put, defaults to 1048576"
+        + "\n-osc os chunk size (number) bytes in each chunk of an object put, defaults to 131072"
+        + "\n-osst os storage type (file|memory) when the bucket is created, defaults to file"
+        + "\n     -m is the number of objects, defaults to 100. Object names come from -st, -ks and -kd,"
+        + "\n     the template defaults to {key} and the key space to the number of objects."
+        + "\n     OsPut goes through the key space in order, OsGet picks with the distribution."
+        + "\n     The content repeats the -pt payload";
 
     public static final String NOTES = "All text constants are case insensitive, i.e."
         + "\n  action, connection strategy, ack policy, pull type"
@@ -66,18 +114,47 @@ public class Usage {
 
     public static final String GENERAL = "-u subject (string), required for publishing or subscribing"
         + "\n-m message count (number) required > 1 for publishing or subscribing, defaults to 100_000"
-        + "\n-d threads (number) for publishing or subscribing, defaults to 1"
+        + "\n-st subject template (string) for keyed subjects, i.e. orders.{key}, used instead of -u."
+        + "\n     {key} must be a whole token. Publishers pick a key for every message, subscribers"
+        + "\n     subscribe to the template with {key} as a wildcard and count messages by subject class"
+        + "\n-ks key space (number) how many keys, defaults to 1000, maximum 10_000_000"
+        + "\n-kd key distribution (uniform|zipfian|hotspot) how publishers pick keys, defaults to uniform"
+        + "\n-d threads (number) for publishing or subscribing, defaults to 1, maximum 20 unless -vt"
         + "\n-n connection strategy (shared|individual) when threading, whether to share"
         + "\n     the connection, defaults to shared"
+        + "\n-vt run each thread as a virtual thread (JDK 21+, platform threads otherwise)"
+        + "\n     before JDK 21 -d and -vc are limited to 20"
+        + "\n     -d can then be up to 100_000 and the threads are spread over -vc connections"
+        + "\n-vc number of connections (number) for -vt, defaults to 1, maximum 1000."
+        + "\n     Threads on the same connection share one stats, reported as one line"
         + "\n-j jitter (number) between publishes or subscribe message retrieval of random"
         + "\n     number from 0 to j-1, in milliseconds, defaults to 0 (no jitter), maximum 10_000"
         + "\n     time spent in jitter is excluded from timings"
+        + "\n-rate target publish rate (number) in messages per second, open loop. Publishes are sent"
+        + "\n     on a fixed schedule and publish latency is measured from the scheduled send time,"
+        + "\n     correcting for coordinated omission. Jitter is ignored. Defaults to 0, closed loop"
+        + "\n-rpt the rate is per thread instead of total across all threads"
+        + "\n-rrf ramp from rate (number) in messages per second, with -rate the rate changes"
+        + "\n     linearly from this rate to -rate over the message count"
         + "\n-ps payload size (number) for publishing, defaults to 128, maximum 1048576"
-        + "\n-rs round size (number) for pubAsync, default to 100, maximum 1000"
+        + "\n-pv payload variants (number) of payloads to rotate through, sizes vary up to 10%"
+        + "\n     around the payload size, defaults to 1, maximum 100"
+        + "\n-pt payload type (zeros|random|text|json) what the payloads contain, defaults to zeros."
+        + "\n     random does not compress, text and json compress like typical data"
+        + "\n-pf payload file (string) take the payload content from this sample file instead"
+        + "\n-mif max in flight (number) for pubAsync and requestAsync, the most publishes waiting for an ack"
+        + "\n     or requests waiting for a reply,"
+        + "\n     default to 100, maximum 100_000. -rs (round size) is accepted as the same option"
         + "\n-kp ack policy (explicit|none|all) for subscriptions, defaults to explicit"
         + "\n-kf ack all frequency (number), applies to ack policy all, ack after kf messages"
         + "\n      defaults to 1, maximum 100"
-        + "\n-bs batch size (number) for subPull*, defaults to 10, maximum 200"
+        + "\n-ka ack async, subscribers hand acks to a sender thread that flushes by count or time,"
+        + "\n      with ack policy all one ack covers each flush. Replaces -kf. Not with -vt"
+        + "\n-kb ack batch (number) for -ka, flush when this many acks are waiting, defaults to 100, maximum 10_000"
+        + "\n-kms ack flush millis (number) for -ka, flush when the oldest ack has waited this long, defaults to 10, maximum 1000"
+        + "\n-bs batch size (number) for subPull* and simplified consumers, defaults to 10, maximum 500"
+        + "\n-bb batch bytes (number) for subConsume, maximum bytes per pull, defaults to 0 (no byte limit)"
+        + "\n-tp threshold percent (number 1-100) for subConsume and subIterate, when to pull again, defaults to 25"
         + "\n-rqwms request wait millis, time to wait for any JetStream request to complete, default is 1000 milliseconds"
         + "\n-rtoms read timeout wait millis, time to wait for an individual synchronous message read (next or fetch), default is 1000 milliseconds"
         + "\n-rmxwms read max wait millis, when reading messages in a loop, stop if there are no messages in this time, default is 10 seconds (10000ms)";
@@ -94,6 +171,8 @@ public class Usage {
         + section("Server Arguments", SERVER)
         + section("Latency Arguments", LATENCY)
         + section("General Arguments", GENERAL)
+        + section("Key Value Arguments", KEY_VALUE)
+        + section("Object Store Arguments", OBJECT_STORE)
         + section("Notes", NOTES)
         ;
 }
@@ -16,11 +16,42 @@ package io.nats.jsmulti.shared;
 import io.nats.client.NUID;
 import io.nats.jsmulti.settings.Context;
 
+import java.time.Instant;
 import java.util.concurrent.ThreadLocalRandom;
 
 public abstract class Utils {
 
     public static final String HDR_PUB_TIME = "pt";
+    public static final String HDR_PUB_NANOS = "ptn";
+    public static final String HDR_PUB_UNCERTAINTY = "ptu";
+
+    // epoch nanos are the epoch at class load plus the monotonic time since,
+    // which has nanosecond resolution and does not step if the wall clock is adjusted during a run
+    private static final long EPOCH_NANOS_BASE;
+    private static final long NANO_TIME_BASE;
+
+    static {
+        Instant now = Instant.now();
+        NANO_TIME_BASE = System.nanoTime();
+        EPOCH_NANOS_BASE = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    /**
+     * The current time as nanoseconds since the epoch, for high resolution latency
+     * @return the epoch nanos
+     */
+    public static long epochNanos() {
+        return toEpochNanos(System.nanoTime());
+    }
+
+    /**
+     * A System.nanoTime() value as nanoseconds since the epoch
+     * @param nanoTime the System.nanoTime() value
+     * @return the epoch nanos
+     */
+    public static long toEpochNanos(long nanoTime) {
+        return EPOCH_NANOS_BASE + (nanoTime - NANO_TIME_BASE);
+    }
 
     public static String makeId() {
         return new NUID().nextSequence();
@@ -0,0 +1,69 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.shared;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates virtual threads when the runtime has them (JDK 21+).
+ * The tool is built for Java 8, so the builder api is looked up by reflection once.
+ * When it is not there, platform threads are created instead.
+ */
+public abstract class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class);
+            unstarted = builderClass.getMethod("unstarted", Runnable.class);
+        }
+        catch (Exception | LinkageError ignore) {
+            // not available in this runtime
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    public static boolean isAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Make an unstarted thread, virtual if available, otherwise a platform thread
+     * @param r the runnable
+     * @param name the thread name
+     * @return the thread
+     */
+    public static Thread newThread(Runnable r, String name) {
+        if (OF_VIRTUAL != null) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread)UNSTARTED.invoke(builder, r);
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return new Thread(r, name);
+    }
+}
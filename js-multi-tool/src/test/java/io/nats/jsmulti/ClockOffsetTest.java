@@ -0,0 +1,32 @@
+package io.nats.jsmulti;
+
+import io.nats.jsmulti.shared.ClockOffset;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClockOffsetTest
+{
+    @Test
+    public void testEstimate() {
+        // the server is 5000 ahead, the second exchange has the shortest round trip
+        long[] sent = new long[]{1000, 2000, 3000};
+        long[] stamped = new long[]{6400, 7050, 8800};
+        long[] received = new long[]{1800, 2100, 3900};
+        ClockOffset co = ClockOffset.estimate(sent, stamped, received);
+        assertTrue(co.isEstimated());
+        assertEquals(3, co.getExchanges());
+        assertEquals(5000, co.getOffsetNanos());
+        assertEquals(50, co.getUncertaintyNanos());
+        assertEquals(12000, co.toServer(7000));
+    }
+
+    @Test
+    public void testNone() {
+        assertFalse(ClockOffset.NONE.isEstimated());
+        assertEquals(7000, ClockOffset.NONE.toServer(7000));
+        assertFalse(ClockOffset.estimate(new long[0], new long[0], new long[0]).isEstimated());
+    }
+}
@@ -0,0 +1,69 @@
+package io.nats.jsmulti;
+
+import io.nats.client.support.JsonParser;
+import io.nats.jsmulti.shared.Stats;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompareTest
+{
+    @Test
+    public void testWelchPValue() {
+        // t = 1, df = 8, two sided p from the t distribution
+        assertEquals(0.3466, Compare.welchPValue(new double[]{1, 2, 3, 4, 5}, new double[]{2, 3, 4, 5, 6}), 0.0001);
+        assertEquals(1, Compare.welchPValue(new double[]{1, 2, 3}, new double[]{1, 2, 3}), 0.0001);
+        assertTrue(Compare.welchPValue(new double[]{100, 101, 99, 100}, new double[]{80, 81, 79, 80}) < 0.001);
+        assertTrue(Double.isNaN(Compare.welchPValue(new double[]{1}, new double[]{1, 2})));
+    }
+
+    @Test
+    public void testRegression() {
+        Compare compare = new Compare(5, 0.05);
+
+        // throughput down 20%, repeatably
+        Compare.Result r = find(compare.compare(runs(1000, 1001, 999), runs(800, 801, 799)), "msgs/sec");
+        assertEquals(-20, r.deltaPercent, 0.1);
+        assertTrue(r.regression);
+
+        // down 20% on average, but too noisy to say
+        r = find(compare.compare(runs(1000, 1500, 500), runs(800, 1300, 300)), "msgs/sec");
+        assertFalse(r.regression);
+        assertEquals("not significant", r.getVerdict());
+
+        // within the threshold
+        r = find(compare.compare(runs(1000, 1001, 999), runs(980, 981, 979)), "msgs/sec");
+        assertFalse(r.regression);
+
+        // one repetition each is judged on the threshold alone
+        r = find(compare.compare(runs(1000), runs(1200)), "msgs/sec");
+        assertTrue(r.improvement);
+        assertTrue(Double.isNaN(r.pValue));
+    }
+
+    private static Compare.Result find(List<Compare.Result> results, String metric) {
+        for (Compare.Result r : results) {
+            if (r.metric.equals(metric)) {
+                return r;
+            }
+        }
+        throw new AssertionError("No " + metric);
+    }
+
+    // runs of one thread, each a second long with the message count
+    private static List<List<Stats>> runs(long... messageCounts) {
+        List<List<Stats>> runs = new ArrayList<>();
+        for (long count : messageCounts) {
+            Stats stats = new Stats(JsonParser.parseUnchecked(
+                "{\"version\":2,\"elapsed\":1000000000,\"messageCount\":" + count + ",\"bytes\":" + count * 100 + "}"));
+            runs.add(Collections.singletonList(stats));
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,164 @@
+package io.nats.jsmulti;
+
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.Nats;
+import io.nats.client.Subscription;
+import io.nats.client.support.JsonParser;
+import io.nats.client.support.JsonValue;
+import io.nats.client.support.JsonValueUtils;
+import io.nats.jsmulti.settings.Arguments;
+import io.nats.jsmulti.shared.Stats;
+import io.nats.jsmulti.support.StandInServer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoordinatorTest
+{
+    private static final String PREFIX = "test.control";
+
+    @Test
+    public void testTwoAgents() throws Exception {
+        try (StandInServer server = new StandInServer(StandInServer.Mode.FANOUT).start();
+             Connection watcher = Nats.connect(server.getUrl()))
+        {
+            // sees the control traffic and the run, in the order the server routes it
+            Subscription watch = watcher.subscribe("test.>");
+            watcher.flush(Duration.ofSeconds(5));
+
+            List<AtomicReference<List<Stats>>> agentStats = new ArrayList<>();
+            List<Thread> agents = new ArrayList<>();
+            for (int x = 1; x <= 2; x++) {
+                Agent agent = new Agent("agent-" + x, PREFIX, new String[]{"-s", server.getUrl()});
+                AtomicReference<List<Stats>> ref = new AtomicReference<>();
+                agentStats.add(ref);
+                Thread t = new Thread(() -> {
+                    try {
+                        ref.set(agent.run());
+                    }
+                    catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                t.start();
+                agents.add(t);
+            }
+
+            Coordinator coordinator = new Coordinator(2, PREFIX, Duration.ofSeconds(10), Duration.ofSeconds(30),
+                Arguments.pubCore("test.run").server(server.getUrl()).messageCount(1_000).noReporting().toStringArray());
+            Map<String, List<Stats>> results = coordinator.run(false);
+            for (Thread t : agents) {
+                t.join(30_000);
+            }
+
+            // both registered and sent their stats
+            assertEquals(2, results.size());
+            assertTrue(results.containsKey("agent-1"));
+            assertTrue(results.containsKey("agent-2"));
+
+            // what the coordinator got is what each agent ran
+            List<Stats> all = new ArrayList<>();
+            for (int x = 0; x < 2; x++) {
+                List<Stats> ran = agentStats.get(x).get();
+                assertNotNull(ran, "agent-" + (x + 1) + " did not run");
+                List<Stats> got = results.get("agent-" + (x + 1));
+                assertEquals(ran.size(), got.size());
+                assertEquals(Stats.total(ran).getMessageCount(), Stats.total(got).getMessageCount());
+                all.addAll(got);
+            }
+            assertEquals(2_000, Stats.total(all).getMessageCount());
+
+            // both were ready before the start and nothing was published before it
+            int ready = 0;
+            boolean started = false;
+            int run = 0;
+            Message m = watch.nextMessage(Duration.ofSeconds(1));
+            while (m != null) {
+                String subject = m.getSubject();
+                if (subject.endsWith("." + Coordinator.READY)) {
+                    assertFalse(started, "ready after the start");
+                    ready++;
+                }
+                else if (subject.endsWith("." + Coordinator.START)) {
+                    assertEquals(2, ready);
+                    started = true;
+                }
+                else if (subject.equals("test.run")) {
+                    assertTrue(started, "published before the start");
+                    run++;
+                }
+                m = watch.nextMessage(Duration.ofMillis(500));
+            }
+            assertTrue(started);
+            assertEquals(2_000, run);
+        }
+    }
+
+    @Test
+    public void testRetriedSendsCountOnce() throws Exception {
+        try (StandInServer server = new StandInServer(StandInServer.Mode.FANOUT).start();
+             Connection nc = Nats.connect(server.getUrl()))
+        {
+            // an agent by hand that sends a stats twice, like a retry after a lost reply
+            Thread agent = new Thread(() -> {
+                try {
+                    Message info = null;
+                    while (info == null || info.getData() == null || info.getData().length == 0) {
+                        try {
+                            info = nc.request(PREFIX + ".register", "agent-1".getBytes(StandardCharsets.UTF_8), Duration.ofSeconds(1));
+                        }
+                        catch (Exception e) {
+                            Thread.sleep(100);
+                        }
+                    }
+                    String runId = JsonValueUtils.readString(JsonParser.parse(info.getData()), "run", null);
+                    Subscription start = nc.subscribe(PREFIX + "." + runId + ".start");
+                    nc.flush(Duration.ofSeconds(5));
+                    nc.request(PREFIX + "." + runId + ".ready", "{\"agent\":\"agent-1\"}".getBytes(StandardCharsets.UTF_8), Duration.ofSeconds(5));
+                    assertNotNull(start.nextMessage(Duration.ofSeconds(5)));
+
+                    // the first stats is sent again before the second
+                    byte[] first = statsMessage(0, 1000);
+                    nc.request(PREFIX + "." + runId + ".stats", first, Duration.ofSeconds(5));
+                    nc.request(PREFIX + "." + runId + ".stats", first, Duration.ofSeconds(5));
+                    nc.request(PREFIX + "." + runId + ".stats", statsMessage(1, 500), Duration.ofSeconds(5));
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            agent.start();
+
+            Coordinator coordinator = new Coordinator(1, PREFIX, Duration.ofSeconds(10), Duration.ofSeconds(10),
+                Arguments.pubCore("test.run").server(server.getUrl()).messageCount(1_000).noReporting().toStringArray());
+            Map<String, List<Stats>> results = coordinator.run(false);
+            agent.join(10_000);
+
+            assertEquals(1, results.size());
+            assertEquals(2, results.get("agent-1").size());
+            assertEquals(1500, Stats.total(results.get("agent-1")).getMessageCount());
+        }
+    }
+
+    private static byte[] statsMessage(int seq, long messages) {
+        Stats stats = new Stats();
+        stats.manualElapsed(1_000_000_000L, messages, messages * 128);
+        return JsonValueUtils.mapBuilder()
+            .put("agent", "agent-1")
+            .put("count", 2)
+            .put("seq", seq)
+            .put("stats", new JsonValue(stats.toJsonValueMap()))
+            .toJsonValue().toJson().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,66 @@
+package io.nats.jsmulti;
+
+import io.nats.client.support.JsonParser;
+import io.nats.jsmulti.shared.Histogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistogramTest
+{
+    @Test
+    public void testIndexRoundTrip() {
+        for (int x = 0; x < Histogram.BUCKET_COUNT; x++) {
+            assertEquals(x, Histogram.indexOf(Histogram.lowestEquivalentValue(x)));
+            assertEquals(x, Histogram.indexOf(Histogram.highestEquivalentValue(x)));
+        }
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.indexOf(Long.MAX_VALUE));
+        assertEquals(0, Histogram.indexOf(-1));
+    }
+
+    @Test
+    public void testPercentiles() {
+        Histogram h = new Histogram();
+        for (long x = 1; x <= 100_000; x++) {
+            h.record(x * 1000);
+        }
+        assertEquals(100_000, h.getCount());
+        assertEquals(1000, h.getMin());
+        assertEquals(100_000_000, h.getMax());
+        assertEquals(100_000_000, h.getValueAtPercentile(100));
+        assertWithinPrecision(50_000_000, h.getValueAtPercentile(50));
+        assertWithinPrecision(99_000_000, h.getValueAtPercentile(99));
+        assertWithinPrecision(99_900_000, h.getValueAtPercentile(99.9));
+    }
+
+    @Test
+    public void testMergeAndJson() throws Exception {
+        Histogram h1 = new Histogram();
+        Histogram h2 = new Histogram();
+        for (long x = 0; x < 1000; x++) {
+            h1.record(x);
+            h2.record(x + 1000);
+        }
+        Histogram total = new Histogram();
+        total.add(h1);
+        total.add(h2);
+        total.add(new Histogram());
+        assertEquals(2000, total.getCount());
+        assertEquals(0, total.getMin());
+        assertEquals(1999, total.getMax());
+        assertWithinPrecision(1000, total.getValueAtPercentile(50));
+
+        Histogram parsed = new Histogram(JsonParser.parse(total.toJsonValue().toJson()));
+        assertEquals(total.getCount(), parsed.getCount());
+        assertEquals(total.getSum(), parsed.getSum());
+        assertEquals(total.getMin(), parsed.getMin());
+        assertEquals(total.getMax(), parsed.getMax());
+        assertEquals(total.getValueAtPercentile(99), parsed.getValueAtPercentile(99));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        double error = Math.abs(actual - expected) / (double)expected;
+        assertTrue(error <= 1.0 / Histogram.SUB_BUCKET_COUNT, "expected " + expected + " actual " + actual);
+    }
+}
@@ -0,0 +1,88 @@
+package io.nats.jsmulti;
+
+import io.nats.jsmulti.shared.LatencyRing;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyRingTest
+{
+    @Test
+    public void testFillDropWrapAndOrder() {
+        LatencyRing ring = new LatencyRing(5);
+        assertEquals(8, ring.getCapacity()); // rounded up to a power of 2
+
+        // fill, the next one is dropped and counted
+        for (long x = 0; x < 8; x++) {
+            assertTrue(ring.offer(x, x + 100, x + 200));
+        }
+        assertFalse(ring.offer(8, 108, 208));
+        assertFalse(ring.offer(9, 109, 209));
+        assertEquals(2, ring.getDropped());
+
+        List<long[]> drained = new ArrayList<>();
+        assertEquals(8, ring.drain((p, s, r) -> drained.add(new long[]{p, s, r})));
+        assertDrained(drained, 0, 8);
+        assertEquals(0, ring.drain((p, s, r) -> drained.add(new long[]{p, s, r})));
+
+        // past the end of the buffer, the slots wrap around and come back in order
+        drained.clear();
+        for (long x = 10; x < 15; x++) {
+            assertTrue(ring.offer(x, x + 100, x + 200));
+        }
+        assertEquals(5, ring.drain((p, s, r) -> drained.add(new long[]{p, s, r})));
+        for (long x = 15; x < 23; x++) {
+            assertTrue(ring.offer(x, x + 100, x + 200));
+        }
+        assertFalse(ring.offer(23, 123, 223));
+        assertEquals(8, ring.drain((p, s, r) -> drained.add(new long[]{p, s, r})));
+        assertDrained(drained, 10, 13);
+        assertEquals(3, ring.getDropped());
+    }
+
+    @Test
+    public void testProducerAndConsumerThreads() throws Exception {
+        LatencyRing ring = new LatencyRing(64);
+        int total = 1_000_000;
+        Thread producer = new Thread(() -> {
+            for (long x = 0; x < total; x++) {
+                ring.offer(x, x, x);
+            }
+        });
+        long[] last = new long[]{-1};
+        long[] count = new long[1];
+        boolean[] ordered = new boolean[]{true};
+        LatencyRing.Handler handler = (p, s, r) -> {
+            // anything dropped leaves a gap, but what arrives is in order and in one piece
+            if (p <= last[0] || s != p || r != p) {
+                ordered[0] = false;
+            }
+            last[0] = p;
+            count[0]++;
+        };
+        producer.start();
+        while (producer.isAlive()) {
+            ring.drain(handler);
+        }
+        producer.join();
+        ring.drain(handler);
+
+        assertTrue(ordered[0]);
+        assertEquals(total, count[0] + ring.getDropped());
+    }
+
+    private static void assertDrained(List<long[]> drained, long first, int count) {
+        assertEquals(count, drained.size());
+        for (int x = 0; x < count; x++) {
+            long[] sample = drained.get(x);
+            assertEquals(first + x, sample[0]);
+            assertEquals(first + x + 100, sample[1]);
+            assertEquals(first + x + 200, sample[2]);
+        }
+    }
+}
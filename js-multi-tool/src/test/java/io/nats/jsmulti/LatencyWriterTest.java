@@ -0,0 +1,112 @@
+package io.nats.jsmulti;
+
+import io.nats.jsmulti.shared.LatencyLogConverter;
+import io.nats.jsmulti.shared.LatencyWriter;
+import io.nats.jsmulti.shared.Stats;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LatencyWriterTest
+{
+    // publish, server and received, with a clock skew that makes a negative and epoch nanos
+    private static final long[][] RECORDS = new long[][] {
+        {1000, 1250, 1700},
+        {2000, 1900, 2100},
+        {0, 0, 0},
+        {1_700_000_000_123_456_789L, 1_700_000_000_123_556_789L, 1_700_000_000_124_000_000L},
+    };
+
+    @Test
+    public void testCsv() throws Exception {
+        Path dir = Files.createTempDirectory("latency");
+        String csv = dir.resolve("latency.csv").toString();
+        write(LatencyWriter.csv(csv));
+        assertCsv(csv);
+        delete(dir);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        Path dir = Files.createTempDirectory("latency");
+        String bin = dir.resolve("latency.bin").toString();
+        String csv = dir.resolve("latency.csv").toString();
+        write(LatencyWriter.binary(bin, false, 1));
+        assertBinary(bin, 1);
+        assertEquals(RECORDS.length, LatencyLogConverter.convert(bin, csv));
+        assertCsv(csv);
+        delete(dir);
+    }
+
+    @Test
+    public void testMappedBinaryRoundTrip() throws Exception {
+        Path dir = Files.createTempDirectory("latency");
+        String bin = dir.resolve("latency.bin").toString();
+        String csv = dir.resolve("latency.csv").toString();
+        write(LatencyWriter.binary(bin, true, 1_000_000));
+        assertBinary(bin, 1_000_000); // also checks the mapped file was cut back to what was written
+        assertEquals(RECORDS.length, LatencyLogConverter.convert(bin, csv));
+        assertCsv(csv);
+        delete(dir);
+    }
+
+    private static void write(LatencyWriter writer) throws Exception {
+        try (LatencyWriter w = writer) {
+            for (long[] r : RECORDS) {
+                w.write(r[0], r[1], r[2]);
+            }
+        }
+    }
+
+    private static void assertBinary(String bin, long nanosPerUnit) throws Exception {
+        assertEquals(LatencyWriter.BINARY_HEADER_SIZE + RECORDS.length * LatencyWriter.BINARY_RECORD_SIZE, new File(bin).length());
+        try (DataInputStream in = new DataInputStream(new FileInputStream(bin))) {
+            byte[] magic = new byte[LatencyWriter.BINARY_MAGIC.length];
+            in.readFully(magic);
+            assertEquals(new String(LatencyWriter.BINARY_MAGIC, StandardCharsets.US_ASCII), new String(magic, StandardCharsets.US_ASCII));
+            assertEquals(nanosPerUnit, in.readLong());
+            for (long[] r : RECORDS) {
+                assertEquals(r[0], in.readLong());
+                assertEquals(r[1], in.readLong());
+                assertEquals(r[2], in.readLong());
+            }
+        }
+    }
+
+    private static void assertCsv(String csv) throws Exception {
+        List<String> lines = Files.readAllLines(new File(csv).toPath(), StandardCharsets.US_ASCII);
+        assertEquals(Stats.LCSV_HEADER.trim(), lines.get(0));
+        assertEquals(RECORDS.length + 1, lines.size());
+        for (int x = 0; x < RECORDS.length; x++) {
+            long[] r = RECORDS[x];
+            String[] values = lines.get(x + 1).split(",");
+            assertEquals(6, values.length);
+            assertEquals(r[0], Long.parseLong(values[0]));
+            assertEquals(r[1], Long.parseLong(values[1]));
+            assertEquals(r[2], Long.parseLong(values[2]));
+            assertEquals(r[1] - r[0], Long.parseLong(values[3]));
+            assertEquals(r[2] - r[1], Long.parseLong(values[4]));
+            assertEquals(r[2] - r[0], Long.parseLong(values[5]));
+        }
+    }
+
+    private static void delete(Path dir) {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File f : files) {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        dir.toFile().delete();
+    }
+}
@@ -0,0 +1,61 @@
+package io.nats.jsmulti;
+
+import io.nats.jsmulti.shared.MetricsServer;
+import io.nats.jsmulti.shared.Stats;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsServerTest
+{
+    @Test
+    public void testSampleNamesBelongToFamilies() throws Exception {
+        Stats stats = new Stats();
+        stats.manualElapsed(1_000_000_000L, 1000, 128_000);
+        stats.recordOp(Stats.Op.PUBLISH, 250_000);
+        MetricsServer ms = MetricsServer.getInstance(0);
+        ms.runStarted("ctx", "PubSync", Collections.singletonList(stats));
+        String text = ms.scrape();
+
+        Map<String, String> types = new HashMap<>();
+        String family = null;
+        int samples = 0;
+        for (String line : text.split("\n")) {
+            if (line.startsWith("# TYPE ")) {
+                String[] parts = line.split(" ");
+                family = parts[2];
+                types.put(family, parts[3]);
+            }
+            else if (line.startsWith("# UNIT ")) {
+                String[] parts = line.split(" ");
+                assertEquals(family, parts[2]);
+                assertTrue(family.endsWith("_" + parts[3]), line);
+            }
+            else if (!line.startsWith("#")) {
+                assertNotNull(family, line);
+                String name = line.split("[{ ]")[0];
+                switch (types.get(family)) {
+                    case "counter":
+                        assertEquals(family + "_total", name, line);
+                        break;
+                    case "histogram":
+                        assertTrue(name.equals(family + "_bucket") || name.equals(family + "_count") || name.equals(family + "_sum"), line);
+                        break;
+                    default:
+                        assertEquals(family, name, line);
+                        break;
+                }
+                samples++;
+            }
+        }
+        assertTrue(samples > 0);
+        assertEquals("counter", types.get("jsmulti_jvm_gc_seconds"));
+        assertTrue(text.endsWith("# EOF\n"));
+    }
+}
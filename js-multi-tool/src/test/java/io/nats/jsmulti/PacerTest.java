@@ -0,0 +1,62 @@
+package io.nats.jsmulti;
+
+import io.nats.jsmulti.shared.Pacer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PacerTest
+{
+    @Test
+    public void testFixedRateSchedule() {
+        Pacer pacer = new Pacer(1000);
+        assertEquals(1_000_000, pacer.getIntervalNanos());
+        for (long slot = 0; slot < 10_000; slot++) {
+            assertEquals(slot * 1_000_000, pacer.getSlotNanos(slot));
+        }
+    }
+
+    @Test
+    public void testRampSchedule() {
+        // 1000/s to 3000/s over 2000 messages, the average is 2000/s so the ramp takes a second
+        Pacer pacer = new Pacer(1000, 3000, 2000);
+        assertEquals(0, pacer.getSlotNanos(0));
+        assertEquals(333_333, pacer.getIntervalNanos());
+
+        // the first interval is at the from rate, the last at the to rate, and they only get shorter
+        assertNear(1_000_000, pacer.getSlotNanos(1) - pacer.getSlotNanos(0), 1000);
+        assertNear(333_333, pacer.getSlotNanos(2000) - pacer.getSlotNanos(1999), 1000);
+        long lastInterval = pacer.getSlotNanos(1);
+        for (long slot = 1; slot <= 2000; slot++) {
+            long interval = pacer.getSlotNanos(slot) - pacer.getSlotNanos(slot - 1);
+            assertTrue(interval <= lastInterval + 1, "slot " + slot); // +1 for rounding to the nano
+            lastInterval = interval;
+        }
+
+        // the rate goes up linearly in time, at half a second it is 2000/s and 750 messages are sent,
+        // the ramp ends at a second, and after it the schedule goes on at the to rate
+        assertNear(500_000_000, pacer.getSlotNanos(750), 1000);
+        assertNear(500_000, pacer.getSlotNanos(751) - pacer.getSlotNanos(750), 1000);
+        assertNear(1_000_000_000, pacer.getSlotNanos(2000), 1000);
+        assertEquals(pacer.getSlotNanos(2000) + 10 * 333_333, pacer.getSlotNanos(2010));
+    }
+
+    @Test
+    public void testScheduleDoesNotSlipWhenLate() {
+        // a nanosecond apart, the caller is always late, so acquire never waits
+        // and every intended time is still the schedule's, not when the caller got there
+        Pacer pacer = new Pacer(1_000_000_000L);
+        long first = pacer.acquire();
+        long intended = first;
+        for (long slot = 1; slot < 10_000; slot++) {
+            intended = pacer.acquire();
+            assertEquals(first + pacer.getSlotNanos(slot), intended);
+        }
+        assertTrue(System.nanoTime() - intended > 0);
+    }
+
+    private static void assertNear(long expected, long actual, long tolerance) {
+        assertTrue(Math.abs(expected - actual) <= tolerance, expected + " ~ " + actual);
+    }
+}
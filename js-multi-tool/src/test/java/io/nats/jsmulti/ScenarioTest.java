@@ -0,0 +1,32 @@
+package io.nats.jsmulti;
+
+import io.nats.jsmulti.settings.Scenario;
+import io.nats.jsmulti.shared.TerminalException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ScenarioTest
+{
+    @Test
+    public void testPhaseNames() throws Exception {
+        Scenario scenario = new Scenario("{\"phases\": ["
+            + "{\"name\": \"steady\", \"messages\": 100},"
+            + "{\"messages\": 100}"
+            + "]}");
+        assertEquals(2, scenario.getPhases().size());
+        assertEquals("steady", scenario.getPhases().get(0).name);
+        assertEquals("phase-2", scenario.getPhases().get(1).name);
+
+        // results are kept by name, so a repeat would overwrite the first phase's
+        assertThrows(TerminalException.class, () -> new Scenario("{\"phases\": ["
+            + "{\"name\": \"steady\", \"messages\": 100},"
+            + "{\"name\": \"steady\", \"messages\": 200}"
+            + "]}"));
+        assertThrows(TerminalException.class, () -> new Scenario("{\"phases\": ["
+            + "{\"messages\": 100},"
+            + "{\"name\": \"phase-1\", \"messages\": 200}"
+            + "]}"));
+    }
+}
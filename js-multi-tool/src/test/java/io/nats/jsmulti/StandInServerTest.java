@@ -0,0 +1,95 @@
+package io.nats.jsmulti;
+
+import io.nats.jsmulti.settings.Arguments;
+import io.nats.jsmulti.shared.Stats;
+import io.nats.jsmulti.support.StandInServer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StandInServerTest
+{
+    @Test
+    public void testSubjectMatching() {
+        assertTrue(StandInServer.matches("a.b".split("\\."), "a.b".split("\\.")));
+        assertTrue(StandInServer.matches("a.*".split("\\."), "a.b".split("\\.")));
+        assertTrue(StandInServer.matches("a.>".split("\\."), "a.b.c".split("\\.")));
+        assertFalse(StandInServer.matches("a.>".split("\\."), "a".split("\\.")));
+        assertFalse(StandInServer.matches("a.*".split("\\."), "a.b.c".split("\\.")));
+        assertFalse(StandInServer.matches("a.b".split("\\."), "a.c".split("\\.")));
+    }
+
+    @Test
+    public void testSinkPubCore() throws Exception {
+        try (StandInServer server = new StandInServer(StandInServer.Mode.SINK).start()) {
+            List<Stats> statsList = JsMulti.run(Arguments.pubCore("sink").server(server.getUrl())
+                .messageCount(10_000).noReporting(), false, true);
+            Stats total = Stats.total(statsList);
+            assertEquals(10_000, total.getMessageCount());
+            assertNull(total.getException());
+            // the last publish may still be on its way
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getMessagesIn() < 10_000 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(server.getMessagesIn() >= 10_000);
+        }
+    }
+
+    @Test
+    public void testJetStreamAcks() throws Exception {
+        try (StandInServer server = new StandInServer(StandInServer.Mode.SINK).jetStreamAcks("stream", "js.>").start()) {
+            Stats sync = Stats.total(JsMulti.run(Arguments.pubSync("js.sync").server(server.getUrl())
+                .messageCount(1_000).noReporting(), false, true));
+            assertEquals(1_000, sync.getMessageCount());
+            assertNull(sync.getException());
+
+            Stats async = Stats.total(JsMulti.run(Arguments.pubAsync("js.async").server(server.getUrl())
+                .messageCount(1_000).noReporting(), false, true));
+            assertEquals(1_000, async.getMessageCount());
+            assertNull(async.getException());
+        }
+    }
+
+    @Test
+    public void testNoResponders() throws Exception {
+        try (StandInServer server = new StandInServer(StandInServer.Mode.SINK).start()) {
+            Stats total = Stats.total(JsMulti.run(Arguments.requestAsync("nobody").server(server.getUrl())
+                .messageCount(100).noReporting(), false, true));
+            assertEquals(100, total.getRequestNoResponders());
+        }
+    }
+
+    @Test
+    public void testFanout() throws Exception {
+        try (StandInServer server = new StandInServer(StandInServer.Mode.FANOUT).start()) {
+            AtomicReference<List<Stats>> subStats = new AtomicReference<>();
+            Thread sub = new Thread(() -> {
+                try {
+                    subStats.set(JsMulti.run(Arguments.subCore("fan").server(server.getUrl())
+                        .messageCount(5_000).noReporting(), false, true));
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            sub.start();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getSubscriptionCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, server.getSubscriptionCount());
+
+            JsMulti.run(Arguments.pubCore("fan").server(server.getUrl()).messageCount(5_000).noReporting(), false, true);
+            sub.join(30_000);
+            assertEquals(5_000, Stats.total(subStats.get()).getMessageCount());
+            assertTrue(server.getMessagesOut() >= 5_000);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.nats.jsmulti;
+
+import io.nats.jsmulti.shared.SubjectSpace;
+import io.nats.jsmulti.shared.SubjectSpace.Distribution;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SubjectSpaceTest
+{
+    private static final int KEY_SPACE = 1000;
+    private static final int PICKS = 200_000;
+
+    @Test
+    public void testKeysAndClassesInBounds() {
+        for (Distribution d : Distribution.values()) {
+            SubjectSpace space = new SubjectSpace("orders.{key}.new", KEY_SPACE, d);
+            SubjectSpace.Chooser chooser = space.chooser();
+            for (int x = 0; x < PICKS; x++) {
+                String subject = chooser.next();
+                int key = space.keyOf(subject);
+                assertTrue(key >= 0 && key < KEY_SPACE, d + " " + subject);
+                int cls = space.classOf(subject);
+                assertTrue(cls >= 0 && cls < SubjectSpace.CLASS_LABELS.length, d + " " + subject);
+            }
+        }
+    }
+
+    @Test
+    public void testKeyOfAndClassOf() {
+        SubjectSpace space = new SubjectSpace("orders.{key}.new", KEY_SPACE, Distribution.UNIFORM);
+        assertEquals(0, space.keyOf("orders.0.new"));
+        assertEquals(999, space.keyOf("orders.999.new"));
+        assertEquals(-1, space.keyOf("orders.1000.new"));
+        assertEquals(-1, space.keyOf("orders.x.new"));
+        assertEquals(-1, space.keyOf("orders..new"));
+        assertEquals(-1, space.keyOf("other.1.new"));
+        assertEquals(-1, space.keyOf("orders.99999999999.new"));
+        assertEquals(0, space.classOf("orders.9.new"));   // hot 1%
+        assertEquals(1, space.classOf("orders.10.new"));  // warm 9%
+        assertEquals(1, space.classOf("orders.99.new"));
+        assertEquals(2, space.classOf("orders.100.new")); // cold 90%
+        assertEquals(-1, space.classOf("orders.1000.new"));
+    }
+
+    @Test
+    public void testSameSeedSameSequence() {
+        for (Distribution d : Distribution.values()) {
+            // the first chooser of every space starts from the same seed
+            SubjectSpace.Chooser a = new SubjectSpace("k.{key}", KEY_SPACE, d).chooser();
+            SubjectSpace.Chooser b = new SubjectSpace("k.{key}", KEY_SPACE, d).chooser();
+            for (int x = 0; x < 10_000; x++) {
+                assertEquals(a.nextKey(), b.nextKey());
+            }
+        }
+    }
+
+    @Test
+    public void testHotspotFraction() {
+        SubjectSpace.Chooser chooser = new SubjectSpace("k.{key}", KEY_SPACE, Distribution.HOTSPOT).chooser();
+        int hotKeys = (int)(KEY_SPACE * SubjectSpace.HOTSPOT_KEY_FRACTION);
+        int hot = 0;
+        for (int x = 0; x < PICKS; x++) {
+            if (chooser.nextKey() < hotKeys) {
+                hot++;
+            }
+        }
+        double fraction = (double)hot / PICKS;
+        assertTrue(Math.abs(fraction - SubjectSpace.HOTSPOT_OP_FRACTION) < 0.01, "hot fraction " + fraction);
+    }
+
+    @Test
+    public void testZipfianSkew() {
+        SubjectSpace.Chooser chooser = new SubjectSpace("k.{key}", KEY_SPACE, Distribution.ZIPFIAN).chooser();
+        int[] counts = new int[KEY_SPACE];
+        for (int x = 0; x < PICKS; x++) {
+            counts[chooser.nextKey()]++;
+        }
+        // key 0 is the most popular and the hot 1% gets far more than 1% of the picks
+        for (int key = 1; key < KEY_SPACE; key++) {
+            assertTrue(counts[0] >= counts[key], "key " + key);
+        }
+        int hot = 0;
+        for (int key = 0; key < KEY_SPACE / 100; key++) {
+            hot += counts[key];
+        }
+        assertTrue(hot > PICKS / 10);
+    }
+}
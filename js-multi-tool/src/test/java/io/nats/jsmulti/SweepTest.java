@@ -0,0 +1,35 @@
+package io.nats.jsmulti;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SweepTest
+{
+    @Test
+    public void testDimension() {
+        Sweep.Dimension d = Sweep.Dimension.parse("-bs=10, 100,500");
+        assertEquals("bs", d.option);
+        assertEquals(Arrays.asList("10", "100", "500"), d.values);
+        assertThrows(IllegalArgumentException.class, () -> Sweep.Dimension.parse("bs"));
+        assertThrows(IllegalArgumentException.class, () -> Sweep.Dimension.parse("bs="));
+    }
+
+    @Test
+    public void testCells() {
+        Sweep sweep = new Sweep(new String[]{"-a", "PubAsync", "-ps", "64"},
+            Arrays.asList(Sweep.Dimension.parse("ps=128,1k"), Sweep.Dimension.parse("d=1,2,4")), 1, false);
+        List<Sweep.Cell> cells = sweep.cells();
+        assertEquals(6, cells.size());
+        assertEquals("-ps 128 -d 1", cells.get(0).toString());
+        assertEquals("-ps 128 -d 4", cells.get(2).toString());
+        assertEquals("-ps 1k -d 1", cells.get(3).toString());
+
+        // the swept values come after the base args, so they win
+        assertEquals(Arrays.asList("-a", "PubAsync", "-ps", "64", "-ps", "1k", "-d", "2"), Arrays.asList(sweep.getArgs(cells.get(4))));
+    }
+}
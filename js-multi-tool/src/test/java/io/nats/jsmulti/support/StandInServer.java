@@ -0,0 +1,543 @@
+// Copyright 2024 The NATS Authors
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at:
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package io.nats.jsmulti.support;
+
+import io.nats.client.support.JsonParser;
+import io.nats.client.support.JsonValue;
+import io.nats.client.support.JsonValueUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal in process stand in for a nats-server, speaking just enough of the core protocol
+ * (INFO, CONNECT, PING, PONG, PUB, HPUB, SUB, UNSUB, MSG, HMSG) to run JsMulti against it
+ * without a real server, so the client side throughput and allocations can be measured on their own.
+ * Point a context at {@link #getUrl()}. It is not a server: no auth, no tls, no clustering and no streams.
+ * <ul>
+ * <li>SINK drops every message</li>
+ * <li>ECHO delivers a message only to the subscriptions of the connection that published it</li>
+ * <li>FANOUT delivers a message to every matching subscription, one per queue group, like a server</li>
+ * </ul>
+ * With {@link #jetStreamAcks(String, String)} a publish with a reply subject on a matching subject
+ * is answered with a canned publish ack, so the JetStream publish actions work too.
+ * Requests nobody answers get a no responders status.
+ * Usage: StandInServer [-port port] [-mode sink|echo|fanout] [-js stream subject-filter]
+ */
+public class StandInServer implements AutoCloseable {
+
+    public enum Mode {
+        SINK("sink"),
+        ECHO("echo"),
+        FANOUT("fanout");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static Mode getInstance(String text) {
+            for (Mode m : Mode.values()) {
+                if (m.label.equalsIgnoreCase(text)) {
+                    return m;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static final int DEFAULT_PORT = 4222;
+    public static final String VERSION = "2.10.0";
+    public static final int MAX_PAYLOAD = 1024 * 1024;
+    public static final int MAX_CONTROL_LINE = 4096;
+
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PONG = "PONG\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO_RESPONDERS = "NATS/1.0 503\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Mode mode;
+    private final int requestedPort;
+    private String jsStream;
+    private String[] jsFilter;
+
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final List<Sub> allSubs = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextClientId = new AtomicLong();
+    private final AtomicLong messagesIn = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong messagesOut = new AtomicLong();
+    private final AtomicLong jsSeq = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        Mode mode = Mode.SINK;
+        String stream = null;
+        String filter = null;
+        for (int x = 0; x < args.length; x++) {
+            switch (args[x]) {
+                case "-port":
+                    port = Integer.parseInt(args[++x]);
+                    break;
+                case "-mode":
+                    mode = Mode.getInstance(args[++x]);
+                    break;
+                case "-js":
+                    stream = args[++x];
+                    filter = args[++x];
+                    break;
+            }
+        }
+        if (mode == null) {
+            System.err.println("Usage: StandInServer [-port port] [-mode sink|echo|fanout] [-js stream subject-filter]");
+            System.exit(-1);
+        }
+        StandInServer server = new StandInServer(mode, port);
+        if (stream != null) {
+            server.jetStreamAcks(stream, filter);
+        }
+        server.start();
+        System.out.println("Stand in server " + mode + " listening on " + server.getUrl());
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Construct a server on any free port
+     * @param mode the mode
+     */
+    public StandInServer(Mode mode) {
+        this(mode, 0);
+    }
+
+    /**
+     * Construct a server
+     * @param mode the mode
+     * @param port the port, 0 for any free port
+     */
+    public StandInServer(Mode mode, int port) {
+        this.mode = mode;
+        this.requestedPort = port;
+    }
+
+    /**
+     * Answer publishes with a reply subject on matching subjects with a publish ack
+     * @param stream the stream name in the ack
+     * @param subjectFilter the subjects, wildcards allowed
+     * @return the server
+     */
+    public StandInServer jetStreamAcks(String stream, String subjectFilter) {
+        jsStream = stream;
+        jsFilter = subjectFilter.split("\\.");
+        return this;
+    }
+
+    public StandInServer start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort));
+        running = true;
+        Thread acceptor = new Thread(this::accept, "stand-in-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getUrl() {
+        return "nats://127.0.0.1:" + getPort();
+    }
+
+    public long getMessagesIn() {
+        return messagesIn.get();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getMessagesOut() {
+        return messagesOut.get();
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public int getSubscriptionCount() {
+        return allSubs.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        }
+        catch (IOException ignore) {}
+        for (Client c : clients) {
+            c.close();
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Client c = new Client(nextClientId.incrementAndGet(), socket);
+                clients.add(c);
+                Thread t = new Thread(c, "stand-in-client-" + c.id);
+                t.setDaemon(true);
+                t.start();
+            }
+            catch (IOException e) {
+                if (running) {
+                    System.err.println("Stand in server accept failed: " + e);
+                }
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------
+    // Routing
+    // ----------------------------------------------------------------------------------------------------
+    private void route(Client publisher, String subject, String reply, int hdrLen, byte[] data) throws IOException {
+        messagesIn.incrementAndGet();
+        bytesIn.addAndGet(data.length - hdrLen);
+        String[] tokens = subject.split("\\.");
+        boolean answered = false;
+
+        if (jsStream != null && reply != null && !subject.startsWith("$JS.") && matches(jsFilter, tokens)) {
+            byte[] ack = ("{\"stream\":\"" + jsStream + "\",\"seq\":" + jsSeq.incrementAndGet() + "}").getBytes(StandardCharsets.US_ASCII);
+            answered = deliverToReply(publisher, reply, 0, ack);
+        }
+
+        if (mode != Mode.SINK) {
+            List<Sub> candidates = mode == Mode.ECHO ? new ArrayList<>(publisher.subs.values()) : allSubs;
+            Map<String, List<Sub>> queues = null;
+            for (Sub sub : candidates) {
+                if ((sub.client == publisher && !publisher.echo) || !matches(sub.tokens, tokens)) {
+                    continue;
+                }
+                if (sub.queue == null) {
+                    answered |= sub.deliver(subject, reply, hdrLen, data);
+                }
+                else {
+                    if (queues == null) {
+                        queues = new HashMap<>();
+                    }
+                    queues.computeIfAbsent(sub.queue, k -> new ArrayList<>()).add(sub);
+                }
+            }
+            if (queues != null) {
+                for (List<Sub> members : queues.values()) {
+                    Sub sub = members.get(ThreadLocalRandom.current().nextInt(members.size()));
+                    answered |= sub.deliver(subject, reply, hdrLen, data);
+                }
+            }
+        }
+
+        if (reply != null && !answered && publisher.noResponders) {
+            deliverToReply(publisher, reply, NO_RESPONDERS.length, NO_RESPONDERS);
+        }
+    }
+
+    // replies go to the publisher's own inbox subscription
+    private boolean deliverToReply(Client publisher, String reply, int hdrLen, byte[] data) throws IOException {
+        String[] tokens = reply.split("\\.");
+        for (Sub sub : publisher.subs.values()) {
+            if (matches(sub.tokens, tokens)) {
+                return sub.deliver(reply, null, hdrLen, data);
+            }
+        }
+        return false;
+    }
+
+    public static boolean matches(String[] pattern, String[] tokens) {
+        for (int x = 0; x < pattern.length; x++) {
+            if (pattern[x].equals(">")) {
+                return tokens.length > x;
+            }
+            if (x >= tokens.length || (!pattern[x].equals("*") && !pattern[x].equals(tokens[x]))) {
+                return false;
+            }
+        }
+        return pattern.length == tokens.length;
+    }
+
+    // ----------------------------------------------------------------------------------------------------
+    // Subscriptions and clients
+    // ----------------------------------------------------------------------------------------------------
+    private class Sub {
+        final Client client;
+        final String sid;
+        final String[] tokens;
+        final String queue;
+        volatile long max = -1;
+        final AtomicLong delivered = new AtomicLong();
+
+        Sub(Client client, String sid, String subject, String queue) {
+            this.client = client;
+            this.sid = sid;
+            this.tokens = subject.split("\\.");
+            this.queue = queue;
+        }
+
+        boolean deliver(String subject, String reply, int hdrLen, byte[] data) throws IOException {
+            long count = delivered.incrementAndGet();
+            if (max != -1 && count > max) {
+                return false;
+            }
+            StringBuilder sb = new StringBuilder(hdrLen > 0 ? "HMSG " : "MSG ")
+                .append(subject).append(' ').append(sid).append(' ');
+            if (reply != null) {
+                sb.append(reply).append(' ');
+            }
+            if (hdrLen > 0) {
+                sb.append(hdrLen).append(' ');
+            }
+            sb.append(data.length).append("\r\n");
+            client.write(sb.toString().getBytes(StandardCharsets.US_ASCII), data);
+            messagesOut.incrementAndGet();
+            if (max != -1 && count >= max) {
+                client.unsub(sid);
+            }
+            return true;
+        }
+    }
+
+    private class Client implements Runnable {
+        final long id;
+        final Socket socket;
+        final Map<String, Sub> subs = new ConcurrentHashMap<>();
+        private InputStream in;
+        private OutputStream out;
+        private final byte[] line = new byte[MAX_CONTROL_LINE];
+        private volatile boolean dirty;
+        boolean echo = true;
+        boolean noResponders;
+
+        Client(long id, Socket socket) {
+            this.id = id;
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+                out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+                write(("INFO {\"server_id\":\"STANDIN\",\"server_name\":\"stand-in\",\"version\":\"" + VERSION
+                    + "\",\"proto\":1,\"host\":\"127.0.0.1\",\"port\":" + getPort()
+                    + ",\"headers\":true,\"max_payload\":" + MAX_PAYLOAD
+                    + ",\"client_id\":" + id + "}\r\n").getBytes(StandardCharsets.US_ASCII), null);
+                flushAll();
+                while (running) {
+                    process(readLine());
+                    // flush only once everything read so far is handled, so replies are batched like a server
+                    if (in.available() == 0) {
+                        flushAll();
+                    }
+                }
+            }
+            catch (IOException e) {
+                // closed
+            }
+            finally {
+                close();
+            }
+        }
+
+        private void process(String control) throws IOException {
+            String[] parts = control.trim().split("\\s+");
+            switch (parts[0].toUpperCase()) {
+                case "PUB": {
+                    // PUB subject [reply] size
+                    int size = Integer.parseInt(parts[parts.length - 1]);
+                    route(this, parts[1], parts.length == 4 ? parts[2] : null, 0, readPayload(size));
+                    break;
+                }
+                case "HPUB": {
+                    // HPUB subject [reply] hdr-size total-size
+                    int hdrLen = Integer.parseInt(parts[parts.length - 2]);
+                    int size = Integer.parseInt(parts[parts.length - 1]);
+                    route(this, parts[1], parts.length == 5 ? parts[2] : null, hdrLen, readPayload(size));
+                    break;
+                }
+                case "SUB": {
+                    // SUB subject [queue] sid
+                    Sub sub = new Sub(this, parts[parts.length - 1], parts[1], parts.length == 4 ? parts[2] : null);
+                    subs.put(sub.sid, sub);
+                    allSubs.add(sub);
+                    break;
+                }
+                case "UNSUB": {
+                    Sub sub = subs.get(parts[1]);
+                    if (sub != null) {
+                        if (parts.length > 2) {
+                            sub.max = Long.parseLong(parts[2]);
+                            if (sub.delivered.get() >= sub.max) {
+                                unsub(sub.sid);
+                            }
+                        }
+                        else {
+                            unsub(sub.sid);
+                        }
+                    }
+                    break;
+                }
+                case "PING":
+                    write(PONG, null);
+                    break;
+                case "PONG":
+                    break;
+                case "CONNECT": {
+                    JsonValue jv = JsonParser.parse(control.substring(control.indexOf('{')));
+                    echo = JsonValueUtils.readBoolean(jv, "echo", true);
+                    noResponders = JsonValueUtils.readBoolean(jv, "headers", false)
+                        && JsonValueUtils.readBoolean(jv, "no_responders", false);
+                    break;
+                }
+                default:
+                    write(("-ERR 'Unknown Protocol Operation'\r\n").getBytes(StandardCharsets.US_ASCII), null);
+                    flushAll();
+                    throw new IOException("Unknown protocol operation: " + control);
+            }
+        }
+
+        private String readLine() throws IOException {
+            int len = 0;
+            while (true) {
+                int b = in.read();
+                if (b == -1) {
+                    throw new EOFException();
+                }
+                if (b == '\n') {
+                    break;
+                }
+                if (len == line.length) {
+                    throw new IOException("Control line too long");
+                }
+                line[len++] = (byte)b;
+            }
+            if (len > 0 && line[len - 1] == '\r') {
+                len--;
+            }
+            return new String(line, 0, len, StandardCharsets.US_ASCII);
+        }
+
+        private byte[] readPayload(int size) throws IOException {
+            byte[] data = new byte[size];
+            readFully(data, size);
+            readFully(new byte[2], 2); // the trailing CRLF
+            return data;
+        }
+
+        private void readFully(byte[] b, int size) throws IOException {
+            int at = 0;
+            while (at < size) {
+                int read = in.read(b, at, size - at);
+                if (read == -1) {
+                    throw new EOFException();
+                }
+                at += read;
+            }
+        }
+
+        void write(byte[] control, byte[] data) throws IOException {
+            synchronized (this) {
+                out.write(control);
+                if (data != null) {
+                    out.write(data);
+                    out.write(CRLF);
+                }
+                dirty = true;
+            }
+        }
+
+        void flush() throws IOException {
+            if (dirty) {
+                synchronized (this) {
+                    dirty = false;
+                    out.flush();
+                }
+            }
+        }
+
+        void unsub(String sid) {
+            Sub sub = subs.remove(sid);
+            if (sub != null) {
+                allSubs.remove(sub);
+            }
+        }
+
+        void close() {
+            clients.remove(this);
+            for (Sub sub : subs.values()) {
+                allSubs.remove(sub);
+            }
+            subs.clear();
+            try {
+                socket.close();
+            }
+            catch (IOException ignore) {}
+        }
+    }
+
+    // a publish can write to any client, so flush every client with something written
+    private void flushAll() {
+        for (Client c : clients) {
+            try {
+                c.flush();
+            }
+            catch (IOException e) {
+                c.close();
+            }
+        }
+    }
+}